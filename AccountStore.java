@@ -0,0 +1,274 @@
+/*
+Purpose: Holds the account of every seated player (ID, balance, table, hand and stats)
+outside of the Java heap, so a server can hold a very large number of accounts
+without slowing down garbage collection.
+
+In general:
+Accounts are fixed-width records stored column by column: one direct buffer
+per field, in chunks of CHUNK records. A record is found by its slot (its
+position in the columns), which the player's seat keeps. Chunks are only
+ever added, never moved, so a slot stays valid for as long as the account is open.
+
+Closed slots go on a free list and are handed out again. Accounts can also
+be looked up by ID through an open addressing hash table kept in another
+direct buffer.
+
+Opening, closing and looking up accounts is synchronized. Reading and writing
+a record is not: each record is only written by the table its player sits at.
+*/
+
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class AccountStore {
+    // Layout fields
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK = 1 << CHUNK_BITS;   // Records per chunk
+    private static final int MASK = CHUNK - 1;
+    private static final int NONE = -1;                 // No slot, no table
+    public static final int HAND_TYPES = 6;             // Hand types counted per account, see Poker.handType()
+
+    // A chunk of records, one buffer per column
+    private static final class Chunk {
+        final ByteBuffer ids = column(Integer.BYTES);       // ID of each account (free slots: next free slot)
+        final ByteBuffer balances = column(Double.BYTES);   // Money each player has left
+        final ByteBuffer tables = column(Integer.BYTES);    // Table each player is seated at
+        final ByteBuffer hands = column(Integer.BYTES);     // Current hand, packed by packHand()
+        final ByteBuffer rounds = column(Integer.BYTES);    // Rounds each player has been dealt into
+        final ByteBuffer wins = column(Integer.BYTES);      // Rounds each player has won
+        final ByteBuffer folds = column(Integer.BYTES);     // Rounds each player has folded
+        final ByteBuffer handTypes = column(HAND_TYPES * Integer.BYTES);  // Hands dealt of each handType()
+
+        private static ByteBuffer column(int width) {
+            return ByteBuffer.allocateDirect(CHUNK * width).order(ByteOrder.nativeOrder());
+        }
+    }
+
+    // Store fields
+    private volatile Chunk[] chunks = new Chunk[0];
+    private int size = 0;               // Slots handed out so far, open or free
+    private int open = 0;               // Accounts currently open
+    private int freeHead = NONE;        // First slot on the free list
+    private int nextID = 1;             // ID given to the next account
+
+    // ID index fields (open addressing, linear probing; each entry is slot + 1, 0 when empty)
+    private ByteBuffer index = ByteBuffer.allocateDirect(64 * Integer.BYTES).order(ByteOrder.nativeOrder());
+    private int indexMask = 63;
+
+
+
+    // Account methods
+    public synchronized int open(double balance, int table) {
+        /*
+        Takes in "balance" of type double and "table" of type int.
+
+        Opens an account with a new ID, the given starting balance and
+        table, and no hand. Returns its slot.
+        */
+        int slot;
+        if (freeHead != NONE) {
+            slot = freeHead;
+            freeHead = chunk(slot).ids.getInt(offset(slot, Integer.BYTES));
+        }
+        else {
+            if (size == chunks.length * CHUNK) grow();
+            slot = size++;
+        }
+
+        int id = nextID++;
+        Chunk chunk = chunk(slot);
+        chunk.ids.putInt(offset(slot, Integer.BYTES), id);
+        chunk.balances.putDouble(offset(slot, Double.BYTES), balance);
+        chunk.tables.putInt(offset(slot, Integer.BYTES), table);
+        chunk.hands.putInt(offset(slot, Integer.BYTES), 0);
+        chunk.rounds.putInt(offset(slot, Integer.BYTES), 0);
+        chunk.wins.putInt(offset(slot, Integer.BYTES), 0);
+        chunk.folds.putInt(offset(slot, Integer.BYTES), 0);
+        for (int type = 0; type < HAND_TYPES; type++) {
+            chunk.handTypes.putInt(offset(slot, HAND_TYPES * Integer.BYTES) + type * Integer.BYTES, 0);
+        }
+
+        if (++open * 4 > (indexMask + 1) * 3) resizeIndex((indexMask + 1) * 2);
+        insert(id, slot);
+        return slot;
+    }
+
+    public synchronized void close(int slot) {
+        /*
+        Takes in "slot" of type int.
+
+        Closes the account in the slot and puts the slot on the free list.
+        */
+        Chunk chunk = chunk(slot);
+        remove(chunk.ids.getInt(offset(slot, Integer.BYTES)));
+        chunk.ids.putInt(offset(slot, Integer.BYTES), freeHead);
+        chunk.tables.putInt(offset(slot, Integer.BYTES), NONE);
+        freeHead = slot;
+        open--;
+    }
+
+    public synchronized int find(int id) {
+        // Returns the slot of the open account with the given ID, or -1 if there is none
+        for (int i = hash(id); ; i = (i + 1) & indexMask) {
+            int entry = index.getInt(i * Integer.BYTES);
+            if (entry == 0) return NONE;
+            if (id(entry - 1) == id) return entry - 1;
+        }
+    }
+
+    public synchronized int size() {
+        // Returns the # of open accounts
+        return open;
+    }
+
+
+
+    // Column accessors
+    public int id(int slot) {
+        return chunk(slot).ids.getInt(offset(slot, Integer.BYTES));
+    }
+
+    public double balance(int slot) {
+        return chunk(slot).balances.getDouble(offset(slot, Double.BYTES));
+    }
+
+    public void setBalance(int slot, double balance) {
+        chunk(slot).balances.putDouble(offset(slot, Double.BYTES), balance);
+    }
+
+    public int table(int slot) {
+        return chunk(slot).tables.getInt(offset(slot, Integer.BYTES));
+    }
+
+    public void setTable(int slot, int table) {
+        chunk(slot).tables.putInt(offset(slot, Integer.BYTES), table);
+    }
+
+    public int hand(int slot) {
+        // Returns the packed hand in the slot (see packHand())
+        return chunk(slot).hands.getInt(offset(slot, Integer.BYTES));
+    }
+
+    public void setHand(int slot, Card[] hand) {
+        chunk(slot).hands.putInt(offset(slot, Integer.BYTES), packHand(hand));
+    }
+
+    public int rounds(int slot) {
+        return chunk(slot).rounds.getInt(offset(slot, Integer.BYTES));
+    }
+
+    public int wins(int slot) {
+        return chunk(slot).wins.getInt(offset(slot, Integer.BYTES));
+    }
+
+    public int folds(int slot) {
+        return chunk(slot).folds.getInt(offset(slot, Integer.BYTES));
+    }
+
+    public int handTypes(int slot, int type) {
+        // Returns how many hands of the given handType() the account has been dealt
+        return chunk(slot).handTypes.getInt(offset(slot, HAND_TYPES * Integer.BYTES) + type * Integer.BYTES);
+    }
+
+    public void countRound(int slot, int type) {
+        // Counts a round dealt into, with a hand of the given handType()
+        Chunk chunk = chunk(slot);
+        int at = offset(slot, Integer.BYTES);
+        chunk.rounds.putInt(at, chunk.rounds.getInt(at) + 1);
+        at = offset(slot, HAND_TYPES * Integer.BYTES) + type * Integer.BYTES;
+        chunk.handTypes.putInt(at, chunk.handTypes.getInt(at) + 1);
+    }
+
+    public void countWin(int slot) {
+        int at = offset(slot, Integer.BYTES);
+        chunk(slot).wins.putInt(at, chunk(slot).wins.getInt(at) + 1);
+    }
+
+    public void countFold(int slot) {
+        int at = offset(slot, Integer.BYTES);
+        chunk(slot).folds.putInt(at, chunk(slot).folds.getInt(at) + 1);
+    }
+
+    public static int packHand(Card[] hand) {
+        /*
+        Takes in "hand" of type Card[].
+
+        Returns the hand packed into one int: 6 bits per card, each the
+        card's index + 1, so 0 means no hand.
+        */
+        int packed = 0;
+        for (int i = 0; i < hand.length; i++) packed |= (hand[i].index + 1) << (6 * i);
+        return packed;
+    }
+
+
+
+    // Layout methods
+    private Chunk chunk(int slot) {
+        return chunks[slot >>> CHUNK_BITS];
+    }
+
+    private static int offset(int slot, int width) {
+        return (slot & MASK) * width;
+    }
+
+    private void grow() {
+        // Adds one chunk; the existing chunks stay where they are
+        Chunk[] grown = new Chunk[chunks.length + 1];
+        System.arraycopy(chunks, 0, grown, 0, chunks.length);
+        grown[chunks.length] = new Chunk();
+        chunks = grown;
+    }
+
+
+
+    // ID index methods
+    private int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & indexMask;
+    }
+
+    private void insert(int id, int slot) {
+        int i = hash(id);
+        while (index.getInt(i * Integer.BYTES) != 0) i = (i + 1) & indexMask;
+        index.putInt(i * Integer.BYTES, slot + 1);
+    }
+
+    private void remove(int id) {
+        /*
+        Takes in "id" of type int.
+
+        Removes the ID from the index, then moves later entries of the
+        same run back so lookups never stop early at the emptied entry.
+        */
+        int i = hash(id);
+        while (id(index.getInt(i * Integer.BYTES) - 1) != id) i = (i + 1) & indexMask;
+
+        for (int j = (i + 1) & indexMask; ; j = (j + 1) & indexMask) {
+            int entry = index.getInt(j * Integer.BYTES);
+            if (entry == 0) break;
+
+            // The entry can fill the gap if its home is not between the gap and itself
+            int home = hash(id(entry - 1));
+            if (((j - home) & indexMask) >= ((j - i) & indexMask)) {
+                index.putInt(i * Integer.BYTES, entry);
+                i = j;
+            }
+        }
+        index.putInt(i * Integer.BYTES, 0);
+    }
+
+    private void resizeIndex(int capacity) {
+        // Rebuilds the index with room for "capacity" entries
+        ByteBuffer old = index;
+        int oldCapacity = indexMask + 1;
+        index = ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder());
+        indexMask = capacity - 1;
+
+        for (int i = 0; i < oldCapacity; i++) {
+            int entry = old.getInt(i * Integer.BYTES);
+            if (entry != 0) insert(id(entry - 1), entry - 1);
+        }
+    }
+}
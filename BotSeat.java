@@ -0,0 +1,59 @@
+/*
+Purpose: A player run by the server itself, so tables can fill up without waiting
+for people to join.
+
+In general:
+A bot has no socket, thread or buffers. Messages sent to it are dropped,
+and the table asks it for its decision on the table's own turn, right
+after the cards are dealt. It decides with the strategy table: it keeps
+playing while continuing is expected to pay, and folds otherwise.
+Against the dealer it plays any hand that is likely enough to win.
+*/
+
+
+public class BotSeat extends Seat {
+    // Constructor
+    public BotSeat(String username, Table table) {
+        // Takes in "username" of type String and "table" of type Table
+        super(username, table);
+    }
+
+
+
+    // Seat methods (a bot has nothing to send to or listen on)
+    @Override
+    public void deliver(String msg) {}
+
+    @Override
+    public void startReading() {}
+
+    @Override
+    public void closeConnection() {}
+
+
+
+    // Game methods
+    public int decide(int opponents, double pot, double fee) {
+        /*
+        Takes in "opponents" of type int, "pot" of type double and "fee" of type double.
+
+        Returns the bot's menu choice: 1 to continue, 2 to fold.
+        Without odds for the hand (no strategy table, or the same card
+        twice from a bigger shoe) the bot always continues.
+        */
+        if (!Strategy.covers(hand)) return 1;
+        return Strategy.continueValue(hand, opponents, pot, fee) >= 0 ? 1 : 2;
+    }
+
+    public int decideAgainstDealer() {
+        /*
+        Returns the bot's menu choice against the dealer: 1 to play, 2 to fold.
+
+        Folding loses the ante, while playing doubles what is at stake,
+        so playing pays whenever the hand beats a random dealer hand at
+        least a quarter of the time. Without odds for the hand the bot always plays.
+        */
+        if (!Strategy.covers(hand)) return 1;
+        return Strategy.equity(hand, 1) >= 0.25 ? 1 : 2;
+    }
+}
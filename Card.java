@@ -10,9 +10,24 @@ import java.util.concurrent.ThreadLocalRandom;
 class Card {
 	int number;
 	String suit;
+	int index;	// Position of the card in a fresh deck, 0 to 51
+
+	// Pre-rendered middle line of each card's box, e.g. "|  A ♠  |", indexed by Card.index
+	private static final char[][] FACES = new char[52][];
+
+	static {
+		String[] suits = {"♣", "♠", "♦", "♥"};
+		String[] numbers = {"A", "2", "3", "4", "5", "6", "7", "8", "9", "10", "J", "Q", "K"};
+		for (int y = 0; y < 4; y++) {
+			for (int p = 0; p < 13; p++) {
+				FACES[y * 13 + p] = ("|  " + numbers[p] + " " + suits[y] + "  |").toCharArray();
+			}
+		}
+	}
 
 	public Card (int p , int i) {
 		number = p;
+		index = (Math.min(Math.max(i, 1), 4) - 1) * 13 + (p - 1);
 		if (i == 1) suit = "♣";
 		else if (i == 2) suit = "♠";
 		else if (i == 3) suit = "♦";
@@ -30,7 +45,11 @@ class Card {
 	}
 
 	public static void shuffleDeck(Card [] deck) {
-		Random rnd = ThreadLocalRandom.current();
+		shuffleDeck(deck, ThreadLocalRandom.current());
+	}
+
+	public static void shuffleDeck(Card [] deck, Random rnd) {
+		// Same shuffle driven by a given generator, so a seeded deck can be rebuilt for replays
 		for (int i = deck.length - 1; i > 0; i--) {
 			int index = rnd.nextInt(i + 1);
 			Card a = deck[index];
@@ -43,4 +62,17 @@ class Card {
 	public int getNumber() {return this.number;}
 
 	public String getSuit() {return this.suit;}
+
+	public char[] getFace() {return FACES[this.index];}
+
+	@Override
+	public String toString() {
+		// Short form of the card, e.g. "A♠" or "10♥", used in the game log
+		String n = Integer.toString(number);
+		if (number == 1) n = "A";
+		else if (number == 11) n = "J";
+		else if (number == 12) n = "Q";
+		else if (number == 13) n = "K";
+		return n + suit;
+	}
 }
\ No newline at end of file
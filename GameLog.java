@@ -0,0 +1,238 @@
+/*
+Purpose: Records a structured history of every game event (joins, deals, decisions,
+folds, bankruptcies, showdowns and payouts) without making the table wait on disk I/O.
+
+In general:
+Game threads only claim a slot in a lock-free ring buffer and drop the event in.
+A single background writer drains the buffer and appends the events to the log
+file in batches, one tab separated line per event.
+
+Events recorded by a table end with a "table=N" field naming it, so the events
+of a tournament's tables can be told apart even though they are interleaved.
+*/
+
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+public class GameLog {
+    // Event types (first field after the timestamp on each line)
+    public static final String START = "START";         // START    mode    (a new game begins: ELIMINATION, DEALER or TOURNAMENT)
+    public static final String JOIN = "JOIN";           // JOIN     id  username  fee
+    public static final String SHUFFLE = "SHUFFLE";     // SHUFFLE  seed  decks
+    public static final String DEAL = "DEAL";           // DEAL     id  card card card
+    public static final String DECISION = "DECISION";   // DECISION id  choice  stake
+    public static final String FOLD = "FOLD";           // FOLD     id
+    public static final String BANKRUPT = "BANKRUPT";   // BANKRUPT id
+    public static final String SHOWDOWN = "SHOWDOWN";   // SHOWDOWN winnerID  candidateID...
+    public static final String PAYOUT = "PAYOUT";       // PAYOUT   id  amount
+    public static final String ANTE = "ANTE";           // ANTE     id  ante  pairPlus   (dealer games only)
+    public static final String DEALER = "DEALER";       // DEALER   card card card
+    public static final String SETTLE = "SETTLE";       // SETTLE   id  returned
+    public static final String TOURNAMENT = "TOURNAMENT";   // TOURNAMENT tables  (events of every table follow, interleaved)
+    public static final String MOVE = "MOVE";           // MOVE     id  table   (tournaments only)
+    public static final String POT = "POT";             // POT      out|in  amount  (pot of a table that broke up, prize pool of the final table)
+    public static final String TABLE = "table=";        // Last field of every event a table records
+
+    // Ring buffer fields
+    private static final int CAPACITY = 1 << 14;                    // Must be a power of two
+    private static final int MASK = CAPACITY - 1;
+    private static final AtomicReferenceArray<String> slots = new AtomicReferenceArray<>(CAPACITY);
+    private static final AtomicLong tail = new AtomicLong();       // Next slot to be claimed by a game thread
+    private static volatile long head = 0;                          // Next slot to be written by the writer
+    private static final AtomicLong dropped = new AtomicLong();    // Events lost because the buffer was full
+
+    // Writer fields
+    private static volatile boolean running = false;
+    private static Thread writer;
+    private static final ThreadLocal<Integer> table = ThreadLocal.withInitial(() -> 0);    // Table whose turn the thread is running (0 for none)
+
+
+
+    // Writer methods
+    public static synchronized void start(String fileName, String mode) throws IOException {
+        /*
+        Takes in "fileName" of type String and "mode" of type String, the
+        kind of game being logged.
+
+        Opens the log file in append mode and starts the background
+        writer. Calling start more than once has no effect.
+        */
+        if (running) return;
+
+        BufferedWriter out = new BufferedWriter(new FileWriter(fileName, StandardCharsets.UTF_8, true), 1 << 16);
+        running = true;
+        event(START, mode);     // Marks where a new game begins in an appended log
+        writer = new Thread(() -> drain(out), "game-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(GameLog::stop));
+    }
+
+    public static void stop() {
+        // Stops the writer once every event already in the buffer is on disk
+        running = false;
+        Thread w = writer;
+        if (w == null || w == Thread.currentThread()) return;
+        LockSupport.unpark(w);
+        try {w.join(2000);}
+        catch (InterruptedException e) {Thread.currentThread().interrupt();}
+    }
+
+    private static void drain(BufferedWriter out) {
+        /*
+        Takes in "out" of type BufferedWriter.
+
+        Writes every published event to the file, flushing once per batch.
+        Parks for a millisecond whenever the buffer is empty.
+
+        In case of an error, the stack trace is printed and logging stops.
+        */
+        try {
+            while (running || head != tail.get()) {
+                int batch = 0;
+                String line;
+                while ((line = slots.get((int) head & MASK)) != null) {
+                    out.write(line);
+                    out.newLine();
+                    slots.lazySet((int) head & MASK, null);
+                    head++;
+                    batch++;
+                }
+
+                if (batch > 0) out.flush();
+                else if (running) LockSupport.parkNanos(1_000_000);
+                else if (head != tail.get()) Thread.onSpinWait();   // A producer is still filling its slot
+            }
+            long lost = dropped.get();
+            if (lost > 0) {
+                out.write(System.currentTimeMillis() + "\tDROPPED\t" + lost);
+                out.newLine();
+            }
+            out.close();
+        }
+        catch (IOException e) {
+            running = false;
+            e.printStackTrace();
+        }
+    }
+
+    private static void publish(String line) {
+        /*
+        Takes in "line" of type String.
+
+        Claims the next slot and stores the line in it. Never blocks:
+        if the writer is not running or has fallen a full buffer behind,
+        the event is counted as dropped instead.
+        */
+        if (!running) return;
+
+        long slot;
+        do {
+            slot = tail.get();
+            if (slot - head >= CAPACITY) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!tail.compareAndSet(slot, slot + 1));
+
+        slots.set((int) slot & MASK, line);
+    }
+
+    private static void event(String type, Object... fields) {
+        // Formats an event as "<millis> <type> <fields...> [table=N]", separated by tabs
+        if (!running) return;
+
+        StringBuilder line = new StringBuilder(64);
+        line.append(System.currentTimeMillis()).append('\t').append(type);
+        for (Object field : fields) line.append('\t').append(field);
+        int number = table.get();
+        if (number != 0) line.append('\t').append(TABLE).append(number);
+        publish(line.toString());
+    }
+
+    public static void atTable(int number) {
+        /*
+        Takes in "number" of type int.
+
+        Tags every event the calling thread records from now on with that
+        table number, until it is called again (0 stops tagging). A table
+        calls this whenever a worker starts running its messages.
+        */
+        table.set(number);
+    }
+
+
+
+    // Event methods
+    public static void join(int id, String username, double fee) {
+        // Usernames are free text, so tabs are replaced to keep the line parseable
+        event(JOIN, id, username == null ? "" : username.replace('\t', ' '), fee);
+    }
+
+    public static void shuffle(long seed, int decks) {
+        event(SHUFFLE, seed, decks);
+    }
+
+    public static void deal(int id, Card[] hand) {
+        event(DEAL, id, hand[0], hand[1], hand[2]);
+    }
+
+    public static void ante(int id, double ante, double pairPlus) {
+        event(ANTE, id, ante, pairPlus);
+    }
+
+    public static void dealer(Card[] hand) {
+        event(DEALER, hand[0], hand[1], hand[2]);
+    }
+
+    public static void decision(int id, int choice, double stake) {
+        event(DECISION, id, choice, stake);
+    }
+
+    public static void fold(int id) {
+        event(FOLD, id);
+    }
+
+    public static void bankrupt(int id) {
+        event(BANKRUPT, id);
+    }
+
+    public static void showdown(int winnerID, int... candidateIDs) {
+        Object[] fields = new Object[candidateIDs.length + 1];
+        fields[0] = winnerID;
+        for (int i = 0; i < candidateIDs.length; i++) fields[i + 1] = candidateIDs[i];
+        event(SHOWDOWN, fields);
+    }
+
+    public static void payout(int id, double amount) {
+        event(PAYOUT, id, amount);
+    }
+
+    public static void settle(int id, double returned) {
+        event(SETTLE, id, returned);
+    }
+
+    public static void tournament(int tables) {
+        event(TOURNAMENT, tables);
+    }
+
+    public static void move(int id, int table) {
+        event(MOVE, id, table);
+    }
+
+    public static void potOut(double pot) {
+        // A table that broke up handed its pot over to the prize pool
+        event(POT, "out", pot);
+    }
+
+    public static void potIn(double prizePool) {
+        // The final table was given the prize pool
+        event(POT, "in", prizePool);
+    }
+}
@@ -5,25 +5,86 @@ Contributors: Raman, Aryan, Harjevan, Surya
 In general:
 Most of the code is written by Raman. However,
 the logic for much of the code was a team effort.
+The game itself is run by the Table; the host only lets players in.
+In a tournament (-Dpoker.mode=tournament) the host lets in up to
+-Dpoker.entrants players and the Tournament seats them across its tables.
+
+Letting players in is a pipeline, so no single client can hold up the others:
+one thread only accepts connections and checks each address's rate limit,
+a bounded pool of handshake threads reads each player's first line (with a
+timeout), and players who are ready are handed to their table in batches.
 */
 
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Host {
     // Server fields
     private final ServerSocket listener;    // Listens for any players wanting to join
+    public static final int PORT = 9090;                // Port players join on
+    public static final int SPECTATOR_PORT = PORT + 1;  // Port spectators watch on
 
     // Game fields
-    private final Poker game = new Poker(); // Creates a game of Poker
-    private static int playerCount = 0;     // Keeps track of the number of players
+    private final Tournament tournament = mode == Mode.TOURNAMENT ? new Tournament() : null;
+    private final Table table = tournament == null ? new Table() : null;   // Table the players are seated at (not in tournaments)
+    private final AtomicInteger playerCount = new AtomicInteger();  // Seats taken, including handshakes in progress
+
+    // Admission fields
+    public static final int handshakeTimeoutMillis = Integer.getInteger("poker.handshakeTimeout", 5_000);  // Whole handshake, not per read
+    private static final int MAX_FIRST_LINE = 256;     // Longest first line (username or RESUME token) accepted
+    private static final int handshakeThreads = Integer.getInteger("poker.handshakeThreads", 32);
+    private static final int handshakeBacklog = Integer.getInteger("poker.handshakeBacklog", 4096);  // Connections waiting for a thread
+    private final RateLimiter perAddress = new RateLimiter(     // Connections per second (and burst) from one address
+            Double.parseDouble(System.getProperty("poker.ipRate", "10")),
+            Double.parseDouble(System.getProperty("poker.ipBurst", "20")));
+    private final ThreadPoolExecutor handshakes = new ThreadPoolExecutor(handshakeThreads, handshakeThreads,
+            30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(handshakeBacklog), runnable -> {
+                Thread worker = new Thread(runnable, "handshake");
+                worker.setDaemon(true);
+                return worker;
+            });
+    private final Semaphore joined = new Semaphore(0);                 // Released once for every new player
 
     // Game-event fields
-    private boolean started = false;        // Stores whether host has started game or not
-    public static boolean roundDone;        // Tracks whether the current round is done
+    private volatile boolean started = false;   // Stores whether host has started game or not
+
+    // Decision deadline fields
+    public enum DefaultAction {FOLD, CONTINUE}
+    public static final long decisionTimeoutMillis = Long.getLong("poker.decisionTimeout", 30_000);
+    public static final DefaultAction defaultAction =
+            DefaultAction.valueOf(System.getProperty("poker.defaultAction", "FOLD").toUpperCase());
+    public static final TimingWheel deadlines = new TimingWheel(100, 512);    // Shared by every table
+
+    // Account fields
+    public static final AccountStore accounts = new AccountStore();   // Accounts of every seated player
+
+    // Session fields
+    public static final long sessionGraceMillis = Long.getLong("poker.sessionGrace", 60_000);
+
+    // Table options
+    public enum Mode {ELIMINATION, DEALER, TOURNAMENT}  // Last player standing, every player against the dealer, or many tables
+    public static final Mode mode = Mode.valueOf(System.getProperty("poker.mode", "ELIMINATION").toUpperCase());
+    public static final boolean pairPlus = Boolean.getBoolean("poker.pairPlus");    // Pair Plus side bet (dealer mode)
+
+    // Bot fields
+    public static final int botCount = Math.min(Integer.getInteger("poker.bots", 0), maxPlayers());  // Bots seated before anyone joins
 
 
 
@@ -42,320 +103,339 @@ public class Host {
     // Server instance methods
     public void startServer() {
         /*
-        Listens for any players that wants to join.
+        Lets players in until the host starts the game.
 
-        If a connection is made, the player is initialized and
-        added to the list of players.
+        Bots (-Dpoker.bots=N) are seated first and count as players.
+        Connections are accepted on their own thread (see startAcceptor()),
+        which keeps running for the whole game so dropped players can
+        re-attach to their seats.
 
         If 3 players have joined, the host has the option to start
         the game.
-        The host can admit up to a max of 17 players.
+        The host can admit as many players as the shoe can deal a
+        round to (17 for a single deck, 16 against the dealer,
+        -Dpoker.decks=N for more), or as many entrants as a
+        tournament takes.
 
-        In case of an error, the connection between the host and player
-        is terminated
+        Once the game has started, waits for the table (or the
+        tournament) to finish and then shuts the server down.
         */
-        try {
-            Scanner input = new Scanner(System.in);
-
-            // Listens on port 9090 for any new players
-            while (!this.listener.isClosed() && !started) {
-                System.out.println("Waiting for players to join...");
-                Socket player = this.listener.accept();
-
-                PlayerHandler playerHandler = new PlayerHandler(player);
-                System.out.println(playerHandler.getUserName() + " has joined..");
-                this.game.addPlayer(playerHandler);
+        handshakes.allowCoreThreadTimeOut(true);
+
+        if (botCount > 0) {
+            // Each table is sent its bots in one batch
+            Map<Table, List<Seat>> bots = new LinkedHashMap<>();
+            for (int i = 1; i <= botCount; i++) {
+                Table at = tableFor();
+                bots.computeIfAbsent(at, t -> new ArrayList<>()).add(new BotSeat("Bot" + i, at));
+            }
+            bots.forEach((at, seats) -> at.post(() -> at.onJoin(seats)));
+            playerCount.addAndGet(botCount);
+            System.out.println(botCount + " bots have joined..");
+        }
 
-                Thread playerThread = new Thread(playerHandler);
-                playerThread.start();
-                Host.playerCount++;
+        startAcceptor();
+        System.out.println("Waiting for players to join...");
+        askToStart(new Scanner(System.in));
 
-                if (Host.playerCount >= 3 && Host.playerCount < 17) {
-                    System.out.print("Start game (Y/N): ");
-                    String choice = input.nextLine();
-                    if (choice.equalsIgnoreCase("Y")) this.started = true;
-                }
+        this.started = true;
+        if (tournament != null) tournament.start();
+        else table.post(table::onStart);
 
-                if (Host.playerCount == 17) {
-                    System.out.println("Max # of player accepted. The game will start now.");
-                    this.started = true;
-                }
+        try {
+            if (tournament != null) {
+                tournament.awaitFinished();
+                System.out.println(tournament.results());
             }
-        } catch (IOException e) {closeServer();}
-
-        PlayerHandler.gameStarted = true;
-        runGame();
+            else table.awaitFinished();
+        }
+        catch (InterruptedException e) {Thread.currentThread().interrupt();}
+        finally {
+            Outbox.finishAll(2_000);
+            closeServer();
+        }
     }
 
+    private Table tableFor() {
+        // Returns the table a new player is seated at
+        return tournament != null ? tournament.register() : table;
+    }
 
-
-    public void closeServer() {
-        // Shuts down the Host file
-        try {if (listener != null) listener.close();}
-        catch (IOException e) {e.printStackTrace();}
+    public static int maxPlayers() {
+        // Returns the most players the game takes
+        if (mode == Mode.TOURNAMENT) return Tournament.MAX_ENTRANTS;
+        return Shoe.maxPlayers(mode == Mode.DEALER);
     }
 
-    public void broadcastMsg(String msg) {
+    private void askToStart(Scanner input) {
         /*
-        Takes "msg" of type String.
-
-        Returns if msg is null.
-        Otherwise, sends "msg" to the player.
+        Takes in "input" of type Scanner.
 
-        In case of an error, the stack trace is printed.
+        Each time a player joins once 3 players are seated, asks the host
+        whether to start the game. Returns once the answer is yes, or
+        without asking once the table is full.
         */
-        if (msg == null) return;
+        int askedAt = 0;    // # of players when the host was last asked
+        while (!listener.isClosed()) {
+            int count = playerCount.get();
 
-        for (PlayerHandler curr = Poker.getHead(); curr != null; curr = curr.link) {
-            try {
-                curr.toPlayer.write(msg);
-                curr.toPlayer.newLine();
-                curr.toPlayer.write("> ");
-                curr.toPlayer.flush();
+            if (count >= maxPlayers()) {
+                System.out.println("Max # of player accepted. The game will start now.");
+                return;
             }
-            catch (IOException e) {e.printStackTrace();}
-        }
-    }
 
+            if (count >= 3 && count > askedAt) {
+                askedAt = count;
+                System.out.print("Start game (Y/N): ");
+                if (!input.hasNextLine()) return;   // No console left to ask
+                if (input.nextLine().equalsIgnoreCase("Y")) return;
+                continue;
+            }
 
+            // Waits for the next player to join
+            try {joined.acquire();}
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            joined.drainPermits();
+        }
+    }
 
-    // Game related instance and class methods
-    public void showHand() throws IOException {
+    public void startAcceptor() {
         /*
-        Loops over the array of cards for each player
-        and displays each player their hand.
+        Accepts connections in a tight loop on a separate thread, for as
+        long as the server is open.
+
+        Connections from an address that is over its rate limit, or that
+        arrive while every handshake thread and backlog slot is taken,
+        are closed right away. Everything else is handed to a handshake thread.
         */
-        for (PlayerHandler curr = Poker.getHead(); curr != null; curr = curr.link) {
-            String[] n = new String[3];     // Holds the value of the cards
-            String[] s = new String[3];     // Holds the suits of the cards
+        Thread acceptor = new Thread(() -> {
+            while (!listener.isClosed()) {
+                try {
+                    Socket socket = listener.accept();
+                    if (!perAddress.tryAcquire(socket.getInetAddress())) {
+                        socket.close();
+                        continue;
+                    }
+
+                    try {handshakes.execute(() -> handshake(socket));}
+                    catch (RejectedExecutionException e) {socket.close();}
+                }
+                catch (IOException e) {
+                    if (!listener.isClosed()) e.printStackTrace();
+                }
+            }
+        }, "acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
 
-            for (int i = 0; i < curr.hand.length; i++) {
-                n[i] = Integer.toString(curr.hand[i].getNumber());
+    private void handshake(Socket socket) {
+        /*
+        Takes in "socket" of type Socket.
 
-                // Changes the numbers to letters
-                if (n[i].equals("1")) n[i] = "A";
-                if (n[i].equals("11")) n[i] = "J";
-                if (n[i].equals("12")) n[i] = "Q";
-                if (n[i].equals("13")) n[i] = "K";
+        Runs on a handshake thread. Admits the connection, giving the
+        client a limited time in all to send its first line, and queues
+        new players to be seated at their table.
+        */
+        try {
+            PlayerHandler player = admit(socket);
+            if (player == null) return;     // Player re-attached to a seat, or was turned away
 
-                s[i] = curr.hand[i].getSuit();
-            }
+            System.out.println(player.getUserName() + " has joined..");
+            player.table.join(player);
+            joined.release();
+        }
+        catch (IOException e) {
+            // Too slow, or gone before finishing the handshake
+            try {socket.close();}
+            catch (IOException ignored) {}
+        }
+    }
 
-            curr.toPlayer.write("Your hand:");
-            curr.toPlayer.newLine();
-            curr.toPlayer.write("---------\t---------\t---------");
-            curr.toPlayer.newLine();
-            curr.toPlayer.write("|       |\t|       |\t|       |");
-            curr.toPlayer.newLine();
+    public PlayerHandler admit(Socket player) throws IOException {
+        /*
+        Takes in "player" of type Socket.
 
+        Reads the first line the player sends. A "RESUME <token>" line
+        re-attaches the connection to the player's existing seat, and null
+        is returned. Any other line is the username of a new player, who
+        is given a seat and returned.
 
-            curr.toPlayer.write("|  " + n[0] + " " + s[0] + "  |\t" +
-                    "|  " + n[1] + " " + s[1] + "  |\t" +
-                    "|  " + n[2] + " " + s[2] + "  |");
-            curr.toPlayer.newLine();
+        Returns null if the player disconnects (or sends too much) before
+        finishing the first line, presents a token that can no longer be
+        used, or the game has started or is full.
 
-            curr.toPlayer.write("|       |\t|       |\t|       |");
-            curr.toPlayer.newLine();
-            curr.toPlayer.write("---------\t---------\t---------");
-            curr.toPlayer.newLine();
-            curr.toPlayer.flush();
+        The whole first line has to arrive within the handshake timeout,
+        however slowly it trickles in: once the deadline passes, the
+        connection is closed under the read.
+        */
+        TimingWheel.Timeout deadline = deadlines.schedule(() -> {
+            try {player.close();}
+            catch (IOException ignored) {}
+        }, handshakeTimeoutMillis);
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(player.getInputStream()));
+        BufferedWriter out = new BufferedWriter(new OutputStreamWriter(player.getOutputStream()));
+
+        String first = readFirstLine(in);
+        if (!deadline.cancel()) return null;    // Deadline passed; the connection is already closed
+        if (first == null) {
+            player.close();
+            return null;
         }
-    }
 
-    public void printMenu() throws IOException {
-        // Displays the menu to each player
-
-        for (PlayerHandler curr = Poker.getHead(); curr != null; curr = curr.link) {
-            curr.toPlayer.newLine();
-            curr.toPlayer.write("> [1] Continue to next round");
-            curr.toPlayer.newLine();
-            curr.toPlayer.write("> [2] Fold and leave the game");
-            curr.toPlayer.newLine();
-            curr.toPlayer.write("> Note: A number outside the range will result in folding from the round");
-            curr.toPlayer.newLine();
-            curr.toPlayer.write("> Choice:");
-            curr.toPlayer.newLine();
-            curr.toPlayer.flush();
+        if (first.startsWith(PlayerHandler.RESUME)) {
+            String token = first.substring(PlayerHandler.RESUME.length()).trim();
+            if (!PlayerHandler.resume(token, player, in, out)) turnAway(player, out, "Your session has expired, please rejoin.");
+            return null;
         }
-    }
 
-    public void printStats() throws IOException {
-        // Displays the current stats of the game to each player
-
-        for (PlayerHandler curr = Poker.getHead(); curr != null; curr = curr.link) {
-            curr.toPlayer.newLine();
-            curr.toPlayer.write("Game stats: ");
-            curr.toPlayer.write("Pot: " + game.getPot());
-            curr.toPlayer.newLine();
-            curr.toPlayer.write("# of players: " + playerCount);
-            curr.toPlayer.newLine();
-            curr.toPlayer.write("Your balance: " + curr.getBalance());
-            curr.toPlayer.newLine();
-            curr.toPlayer.flush();
+        if (started) {
+            turnAway(player, out, "The game has already started.");
+            return null;
         }
-    }
 
-    public void printWinnerStats(PlayerHandler winner) throws IOException {
-        String winnerName = winner.getUserName();
-        winner.updateBalance(game.getPot());
+        if (playerCount.incrementAndGet() > maxPlayers()) {
+            playerCount.decrementAndGet();
+            turnAway(player, out, "The table is full.");
+            return null;
+        }
 
-        broadcastMsg("[HOST]: " + winnerName + " has won the game!");
-        broadcastMsg("[HOST]: " + winnerName + " made $" + game.getPot());
+        return new PlayerHandler(player, in, out, first, tableFor());
     }
 
-    public void printTieStats(PlayerHandler w1, PlayerHandler w2) throws IOException {
-        PlayerHandler winner1 = Poker.getHead();
-        PlayerHandler winner2 = Poker.getHead().link;
+    private void watch(Socket spectator) {
+        /*
+        Takes in "spectator" of type Socket.
 
-        String winner1Name = winner1.getUserName();
-        String winner2Name = winner2.getUserName();
+        Streams a table to the spectator. In a tournament they first send
+        the number of the table they want to watch, within the handshake
+        timeout; if it is not one of the tournament's tables, the
+        connection is closed.
+        */
+        Table watched = table;
+        if (tournament != null) {
+            TimingWheel.Timeout deadline = deadlines.schedule(() -> {
+                try {spectator.close();}
+                catch (IOException ignored) {}
+            }, handshakeTimeoutMillis);
+
+            String first = null;
+            try {
+                BufferedWriter out = new BufferedWriter(new OutputStreamWriter(spectator.getOutputStream()));
+                out.write("[HOST]: Which table would you like to watch?");
+                out.newLine();
+                out.flush();
+                first = readFirstLine(new BufferedReader(new InputStreamReader(spectator.getInputStream())));
+            }
+            catch (IOException e) {
+                // Spectator left or was too slow; nothing to watch
+            }
 
-        double split = Math.round((game.getPot() / 2.0) * 100) / 100.0;
+            watched = null;
+            if (deadline.cancel() && first != null) {
+                try {watched = tournament.table(Integer.parseInt(first.trim()));}
+                catch (NumberFormatException e) {
+                    // Not a table number
+                }
+            }
+        }
 
-        broadcastMsg("[HOST]: " + winner1Name + " & " + winner2Name + " tied");
-        broadcastMsg("[HOST]: " + winner1Name + " made $" + split);
-        broadcastMsg("[HOST]: " + winner2Name + " made $" + split);
+        if (watched == null) {
+            try {spectator.close();}
+            catch (IOException ignored) {}
+            return;
+        }
+        new SpectatorHandler(spectator, watched.getFeed(), watched.getNumber()).run();
     }
 
-    public PlayerHandler determineOverallWinner() {
+    private static String readFirstLine(BufferedReader in) throws IOException {
         /*
-        ! Method only used when everyone is bankrupt at the same time
+        Takes in "in" of type BufferedReader.
 
-        Determines and returns the player with best hand in the current round.
+        Returns the first line the player sent, without its line ending.
+        Returns null if the connection ends before the line does, so a
+        partial line is never taken for a username, or if the line is
+        longer than MAX_FIRST_LINE.
         */
-
-        int winnerID = 1;
-        for (PlayerHandler curr = Poker.getHead(); curr.link != null; curr = curr.link) {
-            int tempWinnerID = Poker.determineWinner(curr, curr.link);
-
-            if (winnerID != tempWinnerID) winnerID = tempWinnerID;
+        StringBuilder line = new StringBuilder();
+        for (int c; (c = in.read()) != -1; ) {
+            if (c == '\n') {
+                int end = line.length();
+                if (end > 0 && line.charAt(end - 1) == '\r') line.setLength(end - 1);
+                return line.toString();
+            }
+            if (line.length() == MAX_FIRST_LINE) return null;
+            line.append((char) c);
         }
-        return game.findPlayer(winnerID);
+        return null;
     }
 
-    public static void decreasePlayerCount() {
-        // Decrements the player count by one
-        playerCount--;
+    private static void turnAway(Socket player, BufferedWriter out, String reason) throws IOException {
+        // Tells the player why they can't join and closes their connection
+        out.write("[HOST]: " + reason);
+        out.newLine();
+        out.flush();
+        player.close();
     }
 
-
-
-    // Game-event instance and class methods
-    public void gameIntro() {
-        broadcastMsg("The game has begun!");
-        try {Thread.sleep(1000);}
-        catch (InterruptedException e) {Thread.currentThread().interrupt();}
-
-        broadcastMsg("Shuffling cards...");
-        try {Thread.sleep(1000);}
-        catch (InterruptedException e) {Thread.currentThread().interrupt();}
-
-        broadcastMsg("Dealing cards...");
-        try {Thread.sleep(1000);}
-        catch (InterruptedException e) {Thread.currentThread().interrupt();}
-    }
-
-    public static void waitForRound() {
+    public void startSpectatorListener(ServerSocket spectatorSocket) {
         /*
-        Waits until all users have decided to either fold or continue.
+        Takes in "spectatorSocket" of type ServerSocket.
+
+        Accepts spectators on a separate thread for as long as the
+        socket is open. Each spectator gets its own handler thread,
+        which picks the table they watch and reads from its feed.
         */
-        Host.roundDone = false;
-        while (!Host.roundDone) {
-            Host.roundDone = true;
-            for (PlayerHandler curr = Poker.getHead(); curr != null; curr = curr.link) {
-                if (!curr.getDecisionMade()) {
-                    Host.roundDone = false;
-                    break;
+        Thread acceptor = new Thread(() -> {
+            while (!spectatorSocket.isClosed()) {
+                try {
+                    Socket spectator = spectatorSocket.accept();
+                    Thread spectatorThread = new Thread(() -> watch(spectator));
+                    spectatorThread.setDaemon(true);
+                    spectatorThread.start();
+                }
+                catch (IOException e) {
+                    if (!spectatorSocket.isClosed()) e.printStackTrace();
                 }
             }
-            try {Thread.sleep(1000);}
-            catch (InterruptedException e) {Thread.currentThread().interrupt();}
-        }
+        }, "spectator-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
     }
 
+    public void closeServer() {
+        // Shuts down the Host file
+        handshakes.shutdownNow();
+        try {if (listener != null) listener.close();}
+        catch (IOException e) {e.printStackTrace();}
+    }
 
 
 
     // Accessors
     public int getPlayerCount() {
-        // Returns the # of players in the game
-        return Host.playerCount;
-    }
-
-    public boolean getRoundDone() {
-        // Returns whether the current round is done or not
-        return Host.roundDone;
-    }
-
-
-
-    // Main game loop
-    public void runGame() {
-        gameIntro();
-        game.dealCards();
-
-        while (playerCount > 0) {
-            // Waits one second so variables across classes can update for each user
-            try {Thread.sleep(1000);}
-            catch (InterruptedException e) {Thread.currentThread().interrupt();}
-
-
-            // Shows hand and stats to each player
-            try {
-                showHand();
-                printStats();
-                printMenu();
-            }
-            catch (IOException e) {closeServer();}
-
-
-            // Handles case where all players are bankrupt at the same time
-            if (PlayerHandler.allBankrupt) {
-                try {printWinnerStats(determineOverallWinner());}
-                catch (IOException e) {e.printStackTrace();}
-                finally {closeServer();}
-            }
-
-
-            // Handles case where one person is left in the game
-            else if (playerCount == 1) {
-                try {printWinnerStats(Poker.getHead());}
-                catch (IOException e) {e.printStackTrace();}
-                finally {closeServer();}
-            }
-
-
-            // Handles case where two players are left in the game
-            else if (playerCount == 2) {
-                int winnerID = Poker.determineWinner(Poker.getHead(), Poker.getHead().link);
-
-                // Handles case where there is no tie
-                if (winnerID != -1) {
-                    try {printWinnerStats(game.findPlayer(winnerID));}
-                    catch (IOException e) {e.printStackTrace();}
-                    finally {closeServer();}
-                }
-
-                // Handles case where there is a tie
-                else {
-                    try {printTieStats(Poker.getHead(), Poker.getHead().link);}
-                    catch (IOException e) {e.printStackTrace();}
-                    finally {closeServer();}
-                }
-            }
-
-            // Waits for all other players to make a decision
-            waitForRound();
-        }
+        // Returns the # of players admitted to the game
+        return this.playerCount.get();
     }
 
 
 
     // Main
     public static void main(String[] args) throws IOException {
-        // Starts server
-        ServerSocket serverSocket = new ServerSocket(9090);
+        /*
+        Binds the player port first, so players can connect (and wait in
+        the backlog) as early as possible, then starts the game log,
+        spectators and the server. See fast-start.sh for a faster boot.
+        */
+        ServerSocket serverSocket = new ServerSocket(PORT);
+        GameLog.start(System.getProperty("poker.log", "game-events.log"), mode.name());
+
         Host server = new Host(serverSocket);
+        server.startSpectatorListener(new ServerSocket(SPECTATOR_PORT));
         server.startServer();
     }
 }
@@ -0,0 +1,168 @@
+/*
+Purpose: Sends a player's output on a writer thread, so a table never waits on a
+player's connection.
+
+In general:
+A table renders everything a player is sent into finished strings and drops them
+in the player's outbox. Outboxes are drained by a small pool of writer threads
+shared by every connection: everything queued is written and then flushed once.
+So while one round's showdown and payouts are still being written, the table is
+already dealing and rendering the next round, and a round takes as long as its
+slowest stage instead of every stage added up.
+
+Each connection has its own outbox. If a write fails, nothing more is written
+and the table is told; what was never written can then be taken back out and
+kept for the player until they re-attach. A player who stops reading long
+enough to fill the outbox has their connection closed.
+*/
+
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+public class Outbox {
+    // Writer fields
+    private static final ExecutorService WRITERS = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+                Thread writer = new Thread(runnable, "player-writer");
+                writer.setDaemon(true);
+                return writer;
+            });
+    private static final int LIMIT = Integer.getInteger("poker.outboxLimit", 4096);   // Most messages waiting per player
+
+    // Connection fields
+    private final Socket socket;            // Connection the output goes to
+    private final BufferedWriter out;       // Writer of that connection
+    private final Consumer<Outbox> failed;  // Told (once) when a write fails
+
+    // Queue fields
+    private final ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger waiting = new AtomicInteger();     // Messages in the queue
+    private final AtomicBoolean scheduled = new AtomicBoolean();   // Whether a writer is queued for this outbox
+    private final List<String> unsent = new ArrayList<>();         // Taken off the queue, not written yet
+    private volatile boolean closing;       // Close the connection once the queue is written
+    private volatile boolean done;          // Connection closed or broken; nothing more is written
+
+
+
+    // Constructor
+    public Outbox(Socket socket, BufferedWriter out, Consumer<Outbox> failed) {
+        /*
+        Takes in "socket" of type Socket, "out" of type BufferedWriter and
+        "failed", what to do when a write fails.
+        */
+        this.socket = socket;
+        this.out = out;
+        this.failed = failed;
+    }
+
+
+
+    // Outbox methods
+    public void send(String text) {
+        /*
+        Takes in "text" of type String, exactly what should be written.
+
+        Queues the text to be written. Never blocks.
+        */
+        queue.add(text);
+        if (waiting.incrementAndGet() > LIMIT) closeQuietly();  // The writer's next write fails
+        schedule();
+    }
+
+    public void close() {
+        // Closes the connection once everything queued before now is written
+        closing = true;
+        schedule();
+    }
+
+    public List<String> takeUnsent() {
+        /*
+        Returns everything that was never written, oldest first.
+
+        Only call after this outbox reported a failed write; no writer
+        touches the queue after that.
+        */
+        List<String> all = new ArrayList<>(unsent);
+        unsent.clear();
+        for (String text; (text = queue.poll()) != null; ) all.add(text);
+        return all;
+    }
+
+    public Socket getSocket() {
+        return this.socket;
+    }
+
+
+
+    // Writer methods
+    private void schedule() {
+        if (!scheduled.compareAndSet(false, true)) return;
+
+        try {WRITERS.execute(this::drain);}
+        catch (RejectedExecutionException e) {scheduled.set(false);}  // Shutting down, see finishAll()
+    }
+
+    public static void finishAll(long millis) {
+        /*
+        Takes in "millis" of type long.
+
+        Lets the writers finish what is already queued, for up to "millis"
+        milliseconds, then stops them. Called once the game is over, so
+        the last messages reach the players before the host exits.
+        */
+        WRITERS.shutdown();
+        try {WRITERS.awaitTermination(millis, TimeUnit.MILLISECONDS);}
+        catch (InterruptedException e) {Thread.currentThread().interrupt();}
+    }
+
+    private void drain() {
+        /*
+        Writes everything queued and flushes once. Closes the connection
+        if it was asked to and the queue is empty. If more is queued
+        meanwhile, the outbox queues itself again.
+
+        In case of an error, the connection is closed and the table is told.
+        */
+        if (!done) {
+            try {
+                for (String text; (text = queue.poll()) != null; ) {
+                    waiting.decrementAndGet();
+                    unsent.add(text);
+                    out.write(text);
+                }
+                out.flush();
+                unsent.clear();
+
+                if (closing && queue.isEmpty()) {
+                    done = true;
+                    closeQuietly();
+                }
+            }
+            catch (IOException e) {
+                done = true;
+                closeQuietly();
+                failed.accept(this);
+            }
+        }
+
+        scheduled.set(false);
+        if (!done && (closing || !queue.isEmpty())) schedule();
+    }
+
+    private void closeQuietly() {
+        try {socket.close();}
+        catch (IOException ignored) {}
+    }
+}
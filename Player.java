@@ -10,10 +10,17 @@ import java.util.Scanner;
 
 public class Player {
     // Instance fields
-    private Socket socket;              // Connection to server
-    private BufferedReader fromHost;    // Reads messages from server
-    private BufferedWriter toHost;      // Sends messages to server
-    private String username;            // Username of player
+    private volatile Socket socket;             // Connection to server
+    private volatile BufferedReader fromHost;   // Reads messages from server
+    private volatile BufferedWriter toHost;     // Sends messages to server
+    private String username;                    // Username of player
+
+    // Session fields
+    private static final String TOKEN = "[HOST]: Session token: ";     // Host gives us our token with this
+    private static final String RESUME = "RESUME ";                     // We present our token with this
+    private static final int RECONNECT_ATTEMPTS = 30;                   // One attempt per second
+    private volatile String token;              // Lets us re-attach to our seat if the connection drops
+    private volatile boolean done;              // Set once we have left the game for good
 
     // Constructors
     public Player(Socket socket, String username) {
@@ -44,6 +51,9 @@ public class Player {
         /*
         This method sends user input to the server.
 
+        If the connection drops, the message is sent again once the
+        listener thread has re-attached to the seat.
+
         In case of an error, the connection between the player and host terminates.
         */
         try {
@@ -51,21 +61,30 @@ public class Player {
             toHost.write(username);
             toHost.newLine();
             toHost.flush();
-
-            Scanner in = new Scanner(System.in);
-            while (socket.isConnected()) {
-                System.out.print("> ");
-                String msg = in.nextLine();
-
-                if (msg == null) continue;
-
-                toHost.write(msg);
-                toHost.newLine();
-                toHost.flush();
-            }
-
         } catch (IOException e) {
             closeEverything(socket, fromHost, toHost);
+            return;
+        }
+
+        Scanner in = new Scanner(System.in);
+        while (!done) {
+            System.out.print("> ");
+            String msg = in.nextLine();
+
+            if (msg == null) continue;
+
+            for (int attempt = 0; attempt < RECONNECT_ATTEMPTS && !done; attempt++) {
+                try {
+                    toHost.write(msg);
+                    toHost.newLine();
+                    toHost.flush();
+                    break;
+                } catch (IOException e) {
+                    // Waits for the listener thread to reconnect
+                    try {Thread.sleep(1000);}
+                    catch (InterruptedException ie) {Thread.currentThread().interrupt();}
+                }
+            }
         }
     }
 
@@ -74,21 +93,64 @@ public class Player {
         This method starts a new thread for each individual player.
         This allows players to read and send messages to the host at the same time.
 
+        Keeps the session token the host sends, and uses it to re-attach
+        to the seat if the connection drops.
+
         In case of an error, the connection between the player and host terminates.
         */
         new Thread(() -> {
-            try {
-                String msgFromHost = " ";
-                while (socket.isConnected() && msgFromHost != null) {
-                    msgFromHost = fromHost.readLine();
-                    System.out.println(msgFromHost);
+            while (!done) {
+                String msgFromHost;
+                try {msgFromHost = fromHost.readLine();}
+                catch (IOException e) {msgFromHost = null;}
+
+                if (msgFromHost == null) {
+                    if (!reconnect()) done = true;
+                    continue;
                 }
-            } catch (IOException e) {
-                closeEverything(socket, fromHost, toHost);
+
+                if (msgFromHost.startsWith(TOKEN)) token = msgFromHost.substring(TOKEN.length()).trim();
+                else System.out.println(msgFromHost);
             }
+            closeEverything(socket, fromHost, toHost);
         }).start();
     }
 
+    private boolean reconnect() {
+        /*
+        Tries to open a new connection to the host and re-attach to the
+        seat with the session token, once a second for a while.
+
+        Returns true if a new connection was made. The host answers on it
+        with either a welcome back or a message that the session expired.
+        */
+        String sessionToken = token;
+        if (sessionToken == null) return false;
+        token = null;   // A token is only presented once; the host sends it again if it is still valid
+
+        System.out.println("Connection lost, reconnecting...");
+        for (int attempt = 0; attempt < RECONNECT_ATTEMPTS; attempt++) {
+            try {
+                Socket newSocket = new Socket(socket.getInetAddress(), socket.getPort());
+                BufferedReader newIn = new BufferedReader(new InputStreamReader(newSocket.getInputStream()));
+                BufferedWriter newOut = new BufferedWriter(new OutputStreamWriter(newSocket.getOutputStream()));
+                newOut.write(RESUME + sessionToken);
+                newOut.newLine();
+                newOut.flush();
+
+                closeEverything(socket, fromHost, toHost);
+                socket = newSocket;
+                fromHost = newIn;
+                toHost = newOut;
+                return true;
+            } catch (IOException e) {
+                try {Thread.sleep(1000);}
+                catch (InterruptedException ie) {Thread.currentThread().interrupt();}
+            }
+        }
+        return false;
+    }
+
     public void closeEverything(Socket socket, BufferedReader in, BufferedWriter out) {
         /*
         Takes in "socket" of type Socket, "in" of type BufferedReader,
@@ -120,6 +182,16 @@ public class Player {
         System.out.print("Enter PORT number: ");
         SERVER_PORT = Integer.parseInt(input.nextLine());
 
+        System.out.print("Watch without playing (Y/N): ");
+        boolean spectating = input.nextLine().equalsIgnoreCase("Y");
+
+        // Spectators watch on the port after the game port and never send anything
+        if (spectating) {
+            Socket socket = new Socket(SERVER_IP, SERVER_PORT + 1);
+            new Player(socket, username).listenToMsgs();
+            return;
+        }
+
         System.out.println("Wait for host to start the game...");
 
         // Attempts to connect to the server
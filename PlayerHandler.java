@@ -1,7 +1,9 @@
 /*
-Purpose:		
-Create multiple threads for each player that can run in parallel.
-Also stores player data and holds some game functionality.
+Purpose:
+Holds the connection and seat of each player. Each connection has a thread
+that reads the player's decisions and passes them to the player's table,
+and an Outbox that writes what the table sends without making it wait.
+Also stores player data.
 
 Contributors: Aryan, Harjevan, and Raman
 
@@ -13,138 +15,110 @@ is written by Harjevan. Aryan also contributed to lots of the program logic for
 
 import java.io.*;
 import java.net.Socket;
-import java.util.ArrayList;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class PlayerHandler implements Runnable {
-    // NOTE: some fields are static, so they can be accessed across classes
+public class PlayerHandler extends Seat implements Runnable {
+    // NOTE: everything but the connection is only changed by the player's table,
+    // on the table's own thread, so none of it needs locking. The seat itself
+    // (account, hand, ...) is kept in Seat
 
     // Server fields
-    private Socket socket;              // Holds player connection to server
-    public BufferedReader fromPlayer;   // Used to read messages from the player
-    public BufferedWriter toPlayer;     // Used to send messages to the player
-
-    // User data
-    private int ID;                     // Unique user id
-    private String username;            // Player's user name
-    private double balance = 12;        // How much money the player has left
-    public Card[] hand = new Card[3];   // Player's hand
-    PlayerHandler link;                 // Holds link to next player
-
-    // Game event variables
-    public static volatile boolean gameStarted;     // Tracks whether game has started or not
-    public boolean decisionMade;                    // Tracks whether all players have made a decision
-    public static boolean allBankrupt = false;      // Tacks whether all players have a balance of 0
-
-    // Miscellaneous variables
-    public static ArrayList<PlayerHandler> players = new ArrayList<>();     // List of players
+    private volatile Socket socket;             // Holds player connection to server
+    public volatile BufferedReader fromPlayer;  // Used to read messages from the player
+    private volatile Outbox outbox;             // Used to send messages to the player
+    private static final String NL = System.lineSeparator();
+
+    // Session fields
+    public static final String RESUME = "RESUME ";  // Prefix of the first line sent by a reconnecting player
+    public static final String TOKEN = "[HOST]: Session token: ";   // Prefix of the line that gives a player its token
+    private static final Map<String, PlayerHandler> sessions = new ConcurrentHashMap<>();  // Seats by token
+    private static final SecureRandom tokens = new SecureRandom();
+    private static final int MISSED_LIMIT = 256;    // Most messages kept for a disconnected player
+    private String token;                           // Lets the player re-attach to this seat
+    boolean disconnected;                           // Connection lost, seat kept for the grace period
+    TimingWheel.Timeout grace;                      // Ends the grace period
+    private final ArrayDeque<String> missed = new ArrayDeque<>();   // Messages sent while disconnected
+
+    // Last state sent to the player, so each round only sends what changed
+    int handSent = -1;                  // Deal number of the hand last shown
+    double potSent = -1;                // Pot last shown
+    int playerCountSent = -1;           // # of players last shown
+    double balanceSent = -1;            // Balance last shown
+    int roundsSent = -1;                // Rounds played when the player's record was last shown
+    boolean menuSent;                   // Whether the menu has been shown
 
 
 
     // Constructor
-    public PlayerHandler(Socket playerSocket) {
+    public PlayerHandler(Socket playerSocket, BufferedReader in, BufferedWriter out, String username, Table table) {
         /*
-        Takes in "playerSocket" of type socket.
-
-        Sets socket field to playerSocket.
-
-        Sets username to username sent from user.
-        Sets ID to the length of the list of players + 1.
-        Subtracts game from the default balance.
-        Updates the pot.
+        Takes in "playerSocket" of type socket, "in" of type BufferedReader,
+        "out" of type BufferedWriter, "username" of type String, the first
+        line the player sent, and "table" of type Table.
 
-        Adds player to list of players
-
-        Sends message to all other users announcing
-        that the player has joined the game.
-
-
-        In case of an error, the connection between the
-        player and host is terminated.
+        Sets the server fields to playerSocket, in and out.
+        The player is seated when the table handles their join.
         */
 
-        try {
-            this.socket = playerSocket;
-            fromPlayer = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            toPlayer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
-
-            this.username = fromPlayer.readLine();
-            this.ID = players.size() + 1;
-
-            this.balance -= Poker.getGameFee();
-            Poker.addToPot(Poker.getGameFee());
-            players.add(this);
-
-            broadcastMsg("[HOST]: " + username + " has joined the game!");
-        }
-        catch (IOException e) {closeEverything(socket, fromPlayer, toPlayer);}
-
+        super(username, table);
+        this.socket = playerSocket;
+        this.fromPlayer = in;
+        this.outbox = newOutbox(playerSocket, out);
     }
 
 
     // Server instance methods
-    public void broadcastMsg(String msg) {
+    @Override
+    public void deliver(String msg) {
         /*
         Takes in "msg" of type String.
 
-        Returns if msg is null.
+        Sends the message to the player, or keeps it for them while
+        they are disconnected so it can be replayed when they return.
 
-        Otherwise, sends the message to all players
-        excluding the implicit one.
-
-        In case of an error, the connection between the player and host is terminated
+        If the send fails, the table is told by the outbox and the
+        connection is treated as lost.
         */
-
         if (msg == null) return;
-        for (PlayerHandler player : players) {
-            try {
-                if (player.getID() != this.getID()) {
-                    player.toPlayer.write(msg);
-                    player.toPlayer.newLine();
-                    player.toPlayer.write("> ");
-                    player.toPlayer.flush();
-                }
-            }
-            catch (IOException e) {closeEverything(socket, fromPlayer, toPlayer);}
+
+        if (disconnected) {
+            if (missed.size() == MISSED_LIMIT) missed.removeFirst();
+            missed.addLast(msg + NL + "> ");     // Kept as it would have been sent
+            return;
         }
+
+        writeToPlayer(msg);
     }
 
-    public void writeToPlayer(String msg) throws IOException {
+    public void writeToPlayer(String msg) {
         /*
         Takes in "msg" of type String.
 
         Returns if the msg is null.
 
-        Otherwise, it sends the message to the player.
+        Otherwise, it queues the message, followed by a prompt, to be sent to the player.
         */
 
         if (msg == null) return;
 
-        toPlayer.write(msg);
-        toPlayer.newLine();
-        toPlayer.write("> ");
-        toPlayer.flush();
+        outbox.send(msg + NL + "> ");
     }
 
-    public void removeFromGame() throws IOException {
-        /*
-        Decreases the player count.
-
-        Removes the implicit player from the list of players.
-        Removes the implicit player from the list of players
-        in the Poker class.
-
-        Sends message to all other players that the user has
-        left the game.
-
-        Closes the connection between the player and host
-        */
+    public void send(String text) {
+        // Queues text the table has already laid out to be sent to the player as is
+        outbox.send(text);
+    }
 
-        Host.decreasePlayerCount();
-        Poker.removePlayer(this.ID);
-        players.remove(this);
-        broadcastMsg("[HOST]: " + this.username + " folded...");
-        writeToPlayer("[HOST]: Closing connection...");
-        closeEverything(this.socket, this.fromPlayer, this.toPlayer);
+    private Outbox newOutbox(Socket playerSocket, BufferedWriter out) {
+        // Returns an outbox for the connection that tells the player's table if a write fails
+        return new Outbox(playerSocket, out, failed -> {
+            Table at = table;
+            at.post(() -> at.onWriteFailed(this, failed));
+        });
     }
 
     public void closeEverything(Socket socket, BufferedReader in, BufferedWriter out) {
@@ -166,106 +140,150 @@ public class PlayerHandler implements Runnable {
         }
     }
 
+    @Override
+    public void closeConnection() {
+        // Closes the connection once everything already sent to the player is written
+        outbox.close();
+    }
 
-
-    // Game methods
-    public boolean updateBalance(double x) {
-        double temp = balance;
-        temp += x;
-        if (temp<0){
-            return false;
-        }
-        else {
-            balance = temp;
-            return true;
-        }
+    @Override
+    public void startReading() {
+        // Starts the thread that reads the player's messages on the current connection
+        new Thread(this, "player-" + getID()).start();
     }
 
 
 
-    // Game-event instance methods
-    public boolean getDecisionMade() {
-        return this.decisionMade;
+    // Session methods
+    @Override
+    public void seat() throws IOException {
+        /*
+        Opens the player's account and gives them a session token,
+        so they can re-attach to this seat if their connection drops.
+        */
+        super.seat();
+        this.token = newToken();
+        sessions.put(token, this);
+        writeToPlayer(TOKEN + token);
+    }
+
+    @Override
+    public void unseat() {
+        // Forgets the player's session, so it can no longer be resumed
+        sessions.remove(token);
+        if (grace != null) grace.cancel();
+        super.unseat();
     }
 
-    public boolean everyoneBankrupt() {
-        /*
-        Checks if all players have a balance of 0.
+    private static String newToken() {
+        // Returns a random, hard to guess session token
+        byte[] bytes = new byte[16];
+        tokens.nextBytes(bytes);
+        StringBuilder hex = new StringBuilder(32);
+        for (byte b : bytes) hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
 
-        If a minimum of two players are not bankrupt, returns false.
+    public static boolean resume(String token, Socket playerSocket, BufferedReader in, BufferedWriter out) {
+        /*
+        Takes in "token" of type String and the new connection of the player.
 
-        Otherwise, returns true.
+        Asks the table of the seat the token was issued for to re-attach
+        the connection. Returns false if there is no such seat.
         */
-        int notBankruptCount = 0;
-        for (PlayerHandler curr = Poker.getHead(); curr != null; curr = curr.link) {
-            if (curr.getBalance() > 0) notBankruptCount++;
-
-            if (notBankruptCount == 2) return false;
-        }
+        PlayerHandler seat = sessions.get(token);
+        if (seat == null) return false;
+        Table at = seat.table;
+        at.post(() -> at.onReattach(seat, playerSocket, in, out));
         return true;
     }
 
+    public boolean isConnected() {
+        return !disconnected;
+    }
 
+    Socket getSocket() {
+        return this.socket;
+    }
 
-    // Accessors
-    public int getID() {
-        return this.ID;
+    Outbox getOutbox() {
+        return this.outbox;
     }
 
-    public double getBalance() {
-        return this.balance;
+    void keepUnsent(List<String> unsent) {
+        /*
+        Takes in "unsent" of type List<String>, output that never reached
+        the player, oldest first.
+
+        Keeps it ahead of anything missed since, so it is replayed first
+        when the player re-attaches. The oldest is dropped if there is no room.
+        */
+        for (int i = unsent.size() - 1; i >= 0 && missed.size() < MISSED_LIMIT; i--) {
+            missed.addFirst(unsent.get(i));
+        }
     }
 
-    public String getUserName() {
-        return this.username;
+    void reattach(Socket playerSocket, BufferedReader in, BufferedWriter out) {
+        /*
+        Takes in the new connection of the player.
+
+        Swaps the connection in, replays the messages the player missed,
+        and clears what was last sent so the hand, stats and menu are
+        sent again.
+        */
+        if (!disconnected) closeEverything(socket, fromPlayer, null);   // Old connection is dead but undetected
+
+        this.socket = playerSocket;
+        this.fromPlayer = in;
+        this.outbox = newOutbox(playerSocket, out);
+        resetSent();
+
+        writeToPlayer(TOKEN + token);
+        writeToPlayer("[HOST]: Welcome back, " + getUserName() + "!");
+        while (!missed.isEmpty()) outbox.send(missed.removeFirst());
+        disconnected = false;
     }
 
-    @Override
-    public void run() {
-        // Waits for the host to start the game
-        while (socket.isConnected() && !gameStarted) Thread.onSpinWait();
 
 
-        // Main game loop
-        while (socket.isConnected()) {
-            decisionMade = false;
+    void resetSent() {
+        // Forgets what was last sent, so the next round sends the hand, stats and menu in full
+        handSent = -1;
+        potSent = -1;
+        playerCountSent = -1;
+        balanceSent = -1;
+        roundsSent = -1;
+        menuSent = false;
+    }
 
-            // Gets choice from user
-            int choice = 0;
-            try {
-                String response = fromPlayer.readLine();
-                choice = Integer.parseInt(response);
-            }
-            catch (IOException e) {closeEverything(socket, fromPlayer, toPlayer);}
-            decisionMade = true;
-
-            try {
-                // Update users balance and moves them onto the next round if they have enough money
-                if (choice == 1) {
-                    double fee = Poker.getGameFee();
-                    boolean hasEnoughMoney = updateBalance((fee * -1));
-
-                    if (hasEnoughMoney) {
-                        Poker.addToPot(fee);
-                        broadcastMsg("[HOST]: " + this.username + " is going to the next round!");
-                    } else {
-                        Host.waitForRound();
-                        if (everyoneBankrupt()) allBankrupt = true;
-                        else {
-                            removeFromGame();
-                            break;
-                        }
-                    }
-                }
-                // A minimum of 3 players must be present in the game for you to fold
-                else if (players.size() >= 3) removeFromGame();
-            }
-            catch (IOException e) {closeEverything(socket, fromPlayer, toPlayer);}
 
-            try {writeToPlayer("[HOST]: Wait for other players");}
-            catch (IOException e) {closeEverything(socket, fromPlayer, toPlayer);}
 
-            Host.waitForRound();
+    // Reader thread
+    @Override
+    public void run() {
+        /*
+        Reads the player's messages and passes each one to the table.
+
+        Ends when the connection is lost, after telling the table.
+        A new thread is started if the player re-attaches.
+        */
+        Socket current = socket;
+        BufferedReader reader = fromPlayer;
+
+        while (true) {
+            String response;
+            try {response = reader.readLine();}
+            catch (IOException e) {response = null;}
+
+            // The table is read once per message, since the seat may move to another table
+            Table at = table;
+            if (response == null) {
+                at.post(() -> at.onDisconnect(this, current));
+                return;
+            }
+
+            String decision = response;
+            at.post(() -> at.onDecision(this, decision));
         }
     }
 }
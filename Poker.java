@@ -4,11 +4,21 @@ other miscellaneous operations dealing with the cards and game statistics.
 Contributors: Aryan, Raman, Surya, Harjevan
 */
 
+import java.util.Random;
+
 public class Poker {
-	private static PlayerHandler head; //head of linked list of Players (PlayerHandler for server convention)
+	//each table owns its own game, so none of the game state is static
+	private Seat head; //head of linked list of Players (people and bots alike)
+
+	private double pot = 0; //holds the value of the pot when playing
+	public static final double GAME_FEE = 2; //game fee to enter game (and ante against the dealer), arbitrary value set at $2
+	private double gameFee = GAME_FEE; //game fee of this game
+	private int dealCount = 0; //number of times cards have been dealt, used to tell when hands change
+	private final Shoe shoe = new Shoe(Shoe.DECKS, Shoe.PENETRATION); //cards are dealt from here round after round
+	private final Card[] dealerHand = new Card[3]; //dealer's hand, only dealt when playing against the dealer
 
-	private static double pot = 0; //holds the value of the pot when playing
-	private static double gameFee = 2; //game fee to enter game, arbitrary value set at $2
+	//Pair Plus pays this many times the bet for each hand type (indexed by handType()), nothing for a random hand
+	public static final int[] PAIR_PLUS = {40, 30, 6, 3, 1, 0};
 
 
 	// Poker methods
@@ -16,7 +26,7 @@ public class Poker {
     //prints the usernames of all the players that are currently in the game (linked list)
     
 		String strRepr = " ";
-		for (PlayerHandler temp = head; temp != null; temp = temp.link) {
+		for (Seat temp = head; temp != null; temp = temp.link) {
 			strRepr += temp.getUserName() + " -> ";
 		}
 		return strRepr;
@@ -24,27 +34,51 @@ public class Poker {
 
 	public void dealCards() {
     //deals 3 cards to all players that are currently in the game
-    //deck is first initialized and shuffled to ensure that each player gets a different hand every time they play
+    //cards come from the shoe, which carries on from the last round until its cut card is reached
     
-		Card[] deck = new Card[52];
-		Card.initializeDeck(deck);
-		Card.shuffleDeck(deck);
+		dealCards(false);
+	}
 
-		PlayerHandler temp = head;
-		Card [] tempcards = new Card [3];
-		int count = 0;
+	public void dealCards(boolean withDealer) {
+    //same as dealCards(), and when withDealer is true the dealer is dealt 3 cards after the players
+
+		shoe.prepare(getPlayerCount() * 3 + (withDealer ? 3 : 0));
+		dealCount++;
+
+		for (Seat temp = head; temp != null; temp = temp.link) {
+			for (int y = 0; y < temp.hand.length; y++) {
+				temp.hand[y] = shoe.deal();
+			}
+			temp.holdHand();
+			GameLog.deal(temp.getID(), temp.hand);
+		}
 
-		for (int i = 0; i <= deck.length && temp != null; i++){
-			tempcards[count] = deck[i];
-			count += 1;
-			if (count==3){
-				for (int y = 0; y< temp.hand.length; y++){
-					temp.hand[y] = tempcards[y];
-				}
-				temp = temp.link;
-				count = 0;
+		if (withDealer) {
+			for (int y = 0; y < dealerHand.length; y++) {
+				dealerHand[y] = shoe.deal();
 			}
+			GameLog.dealer(dealerHand);
+		}
+	}
+
+	public static Card[] shuffledDeck(long seed) {
+    //builds a full deck and shuffles it with a generator seeded by seed
+    //the same seed always produces the same deck, which is what lets recorded games be replayed
+
+		return shuffledShoe(seed, 1);
+	}
+
+	public static Card[] shuffledShoe(long seed, int decks) {
+    //same as shuffledDeck(), but with the given number of decks shuffled together
+
+		Card[] shoe = new Card[52 * decks];
+		Card[] deck = new Card[52];
+		for (int i = 0; i < decks; i++) {
+			Card.initializeDeck(deck);
+			System.arraycopy(deck, 0, shoe, i * 52, 52);
 		}
+		Card.shuffleDeck(shoe, new Random(seed));
+		return shoe;
 	}
 
 	public static void sortHand(Card[] hand) {
@@ -120,73 +154,174 @@ public class Poker {
 		return 5;
 	}
 
-	public static int sumBasedWinner(PlayerHandler p1, PlayerHandler p2) {
-    //determines the winner and returns their user ID in the case where both player's hand are random -> case 5
-    //in that case, this method will determine the winner based on the cumulative sum of their cards
-    //higher sum will result in that player winning
-    
-    
-		int p1Sum = 0, p2Sum = 0;
-		for (int i = 0; i < p1.hand.length; i++) {
-			p1Sum += p1.hand[i].getNumber();
-			if (p1.hand[i].getNumber() == 1) p1Sum += 13;
+	public static int compareSums(Card[] h1, Card[] h2) {
+    //compares two hands by the cumulative sum of their cards, with aces counted high
+    //returns a positive number if h1 wins, a negative number if h2 wins and 0 on a tie
+
+		int h1Sum = 0, h2Sum = 0;
+		for (int i = 0; i < h1.length; i++) {
+			h1Sum += h1[i].getNumber();
+			if (h1[i].getNumber() == 1) h1Sum += 13;
 
-			p2Sum += p2.hand[i].getNumber();
-			if (p2.hand[i].getNumber() == 1) p2Sum += 13;
+			h2Sum += h2[i].getNumber();
+			if (h2[i].getNumber() == 1) h2Sum += 13;
 		}
 
-		if (p1Sum > p2Sum) return p1.getID();
-		else if (p1Sum < p2Sum) return p2.getID();
-		return -1;
+		return Integer.compare(h1Sum, h2Sum);
 	}
 
-	public static int determineWinner(PlayerHandler p1, PlayerHandler p2) {
-    //determines the winner when there is only two players left at the table
-    //checks the respective hands of each player and checks to see which is better than the other using the handType() method in conjunction
-    //method returns the userID of the winning player
+	public static int compareHands(Card[] h1, Card[] h2) {
+    //compares two hands using the handType() method, falling back to the high card and then the card sums
+    //returns a positive number if h1 wins, a negative number if h2 wins and 0 on a tie
+    //works on bare hands so that the replay tool can run the same rules without a connected player
 
-    //determining the hand type for each player
-		int p1HandType = handType(p1.hand);
-		int p2HandType = handType(p2.hand);
+		return compareTyped(h1, handType(h1), h2, handType(h2));
+	}
+
+	public static int compareTyped(Card[] h1, int h1HandType, Card[] h2, int h2HandType) {
+    //same as compareHands(), for hands that have already been through handType() (which also sorts them)
+    //lets one hand, such as the dealer's, be typed once and compared against many others
 
-		if (p1HandType < p2HandType) return p1.getID();
-		else if (p1HandType > p2HandType) return p2.getID();
-		else if (p1HandType == 4) return sumBasedWinner(p1, p2);
+		if (h1HandType < h2HandType) return 1;
+		else if (h1HandType > h2HandType) return -1;
+		else if (h1HandType == 4) return compareSums(h1, h2);
 		else {
-			int p1Pair = 0, p2Pair = 0;
-			if (p1.hand[1] == p1.hand[2]) p1Pair = 1;
-			if (p2.hand[1] == p2.hand[2]) p2Pair = 1;
+			int h1Pair = 0, h2Pair = 0;
+			if (h1[1] == h1[2]) h1Pair = 1;
+			if (h2[1] == h2[2]) h2Pair = 1;
 
-			if (p1.hand[p1Pair].getNumber() > p2.hand[p2Pair].getNumber()) return p1.getID();
-			else if (p1.hand[p1Pair].getNumber() < p2.hand[p2Pair].getNumber()) return p2.getID();
-			else return sumBasedWinner(p1, p2);
+			if (h1[h1Pair].getNumber() > h2[h2Pair].getNumber()) return 1;
+			else if (h1[h1Pair].getNumber() < h2[h2Pair].getNumber()) return -1;
+			else return compareSums(h1, h2);
 		}
 	}
 
+	public static int compareAgainstDealer(Card[] h1, int h1HandType, Card[] h2, int h2HandType) {
+    //compares two hands by standard three card poker rules, for games against the dealer
+    //hands must already have been through handType(); the better type wins, then the cards are compared from the top
+    //aces count high, as in dealerQualifies(), except at the bottom of an ace-2-3 straight
+
+		if (h1HandType < h2HandType) return 1;
+		else if (h1HandType > h2HandType) return -1;
+		return Integer.compare(rankKey(h1, h1HandType), rankKey(h2, h2HandType));
+	}
+
+	private static int rankKey(Card[] hand, int handType) {
+    //returns a number that orders hands of the same type: the deciding ranks from high to low, in base 15
+    //a pair is ranked by the pair before the odd card, and a straight by its top card
+
+		int x = highRank(hand[0]), y = highRank(hand[1]), z = highRank(hand[2]);
+		if (x < y) {int t = x; x = y; y = t;}
+		if (y < z) {int t = y; y = z; z = t;}
+		if (x < y) {int t = x; x = y; y = t;}
+
+		if (handType == 0 || handType == 2) return x == 14 && y == 3 ? 3 : x;
+		if (handType == 4) return x == y ? x * 15 + z : y * 15 + x;
+		return x * 225 + y * 15 + z;
+	}
+
+	private static int highRank(Card card) {
+    //returns the rank of the card from 2 to 14, with aces high
+
+		return card.getNumber() == 1 ? 14 : card.getNumber();
+	}
+
+	public static boolean dealerQualifies(Card[] dealer, int dealerHandType) {
+    //the dealer only plays with a queen high or better; takes a hand that has already been through handType()
+    //aces count high here, as in compareAgainstDealer(), and sort first, so an ace anywhere in a random hand qualifies
+
+		if (dealerHandType < 5) return true;
+		return dealer[0].getNumber() == 1 || dealer[2].getNumber() >= 12;
+	}
+
+	public static double settleAgainstDealer(Card[] hand, Card[] dealer, int dealerHandType, boolean qualifies,
+	                                         double ante, double play, double pairPlus) {
+    //returns what a player gets back (stakes included) from their ante, play and Pair Plus bets against the dealer
+    //the dealer's hand must already have been through handType(), so it is only typed once per round
+    //hand is sorted in place, like handType()
+    //Pair Plus pays on the player's hand alone; a fold (play of 0) loses the ante
+    //if the dealer does not qualify the ante pays 1 to 1 and the play bet is returned
+    //otherwise the better hand by compareAgainstDealer() takes both bets, and a tie returns them
+
+		int handType = handType(hand);
+		double back = PAIR_PLUS[handType] > 0 ? pairPlus * (PAIR_PLUS[handType] + 1) : 0;
+
+		if (play == 0) return back;
+		if (!qualifies) return back + ante * 2 + play;
+
+		int result = compareAgainstDealer(hand, handType, dealer, dealerHandType);
+		if (result > 0) return back + (ante + play) * 2;
+		else if (result == 0) return back + ante + play;
+		return back;
+	}
+
+	public static int sumBasedWinner(Seat p1, Seat p2) {
+    //determines the winner and returns their user ID in the case where both player's hand are random -> case 5
+    //in that case, this method will determine the winner based on the cumulative sum of their cards
+    //higher sum will result in that player winning
+
+		int result = compareSums(p1.hand, p2.hand);
+		if (result > 0) return p1.getID();
+		else if (result < 0) return p2.getID();
+		return -1;
+	}
+
+	public static int showdownWinner(Card[][] hands, int[] ids) {
+    //determines who takes the pot at a showdown, from every candidate's hand and ID in table order
+    //the best hand by compareHands() wins; two candidates who tie return -1 and split the pot
+    //with more than two candidates, a tie for the best hand goes to the first of them in table order
+    //works on bare hands so that the replay tool picks the winner exactly like a table does
+
+		int best = 0;
+		boolean tied = false;
+		for (int i = 1; i < hands.length; i++) {
+			int result = compareHands(hands[i], hands[best]);
+			if (result > 0) {
+				best = i;
+				tied = false;
+			}
+			else if (result == 0) tied = true;
+		}
+
+		if (tied && hands.length == 2) return -1;
+		return ids[best];
+	}
+
+	public static int determineWinner(Seat p1, Seat p2) {
+    //determines the winner when there is only two players left at the table
+    //checks the respective hands of each player and checks to see which is better than the other using compareHands()
+    //method returns the userID of the winning player, or -1 on a tie
+
+		int result = compareHands(p1.hand, p2.hand);
+		if (result > 0) return p1.getID();
+		else if (result < 0) return p2.getID();
+		return -1;
+	}
+
 
 	// Linked List methods
 	public int getPlayerCount() {
     //returns the number of players that are currently in the game (Linked List)
     
 		int count = 0;
-		for (PlayerHandler temp = head; temp != null; temp = temp.link) {
+		for (Seat temp = head; temp != null; temp = temp.link) {
 			count++;
 		}
 		return count;
 	}
 
-	public void addPlayer(PlayerHandler x) {
+	public void addPlayer(Seat x) {
   //adds a player to the game (Linked List)
     
 		x.link = head;
 		head = x;
 	}
 
-	public static void removePlayer(int id) {
+	public void removePlayer(int id) {
     //removes a player from the game (Linked List) by locating them using their ID
     
-		PlayerHandler current = head;
-		PlayerHandler previous = null;
+		Seat current = head;
+		Seat previous = null;
 
 		boolean found = false;
 		while (!found && current != null) {
@@ -210,12 +345,12 @@ public class Poker {
 		}
 	}
 
-	public PlayerHandler findPlayer(int userID) {
+	public Seat findPlayer(int userID) {
     //finds and locates a player in the game using their userID
     //returns the player once and if found
     
-		PlayerHandler found = null;
-		for (PlayerHandler temp = head; (temp.link!=null) && (found==null); temp = temp.link) {
+		Seat found = null;
+		for (Seat temp = head; (temp!=null) && (found==null); temp = temp.link) {
 			if (temp.getID() == userID)
 				found = temp;
 		}
@@ -231,13 +366,25 @@ public class Poker {
 		return pot;
 	}
 
-	public static double getGameFee() {
+	public int getDealCount() {
+    //returns the number of times cards have been dealt
+
+		return dealCount;
+	}
+
+	public double getGameFee() {
     //returns the entry fee to enter the game
     
 		return gameFee;
 	}
 
-	public static PlayerHandler getHead() {
+	public Card[] getDealerHand() {
+    //returns the dealer's hand from the latest deal against the dealer
+
+		return dealerHand;
+	}
+
+	public Seat getHead() {
     //returns the head of the linked list (game)
     //represents the last player to enter the game
     
@@ -252,7 +399,7 @@ public class Poker {
 		pot = amount;
 	}
 
-	public static void addToPot(double amount) {
+	public void addToPot(double amount) {
     //takes in an explicit parameter amount
     //alters the value for the pot of the game by increasing it by the value of amount
     
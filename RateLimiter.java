@@ -0,0 +1,78 @@
+/*
+Purpose: Limits how often each address may connect, so one client cannot flood
+the host with connections.
+
+In general:
+Each address has a bucket of tokens that refills at a steady rate up to a
+maximum burst. Every connection takes a token, and a connection that finds
+the bucket empty is turned away. Buckets that have refilled completely are
+forgotten from time to time, so addresses that come and go don't pile up.
+*/
+
+
+import java.util.concurrent.ConcurrentHashMap;
+
+public class RateLimiter {
+    // Limit fields
+    private final double perSecond;     // Tokens added to a bucket every second
+    private final double burst;         // Most tokens a bucket can hold
+    private final ConcurrentHashMap<Object, Bucket> buckets = new ConcurrentHashMap<>();
+    private static final int PRUNE_AT = 10_000;     // # of buckets that triggers forgetting full ones
+
+    // Tokens left for one address
+    private static final class Bucket {
+        double tokens;
+        long updatedNanos;
+
+        Bucket(double tokens, long now) {
+            this.tokens = tokens;
+            this.updatedNanos = now;
+        }
+    }
+
+
+
+    // Constructors
+    public RateLimiter(double perSecond, double burst) {
+        // Takes in "perSecond" of type double and "burst" of type double
+        this.perSecond = perSecond;
+        this.burst = Math.max(burst, 1);
+    }
+
+
+
+    // Instance methods
+    public boolean tryAcquire(Object key) {
+        /*
+        Takes in "key" of type Object, such as an address.
+
+        Takes a token from the key's bucket. Returns false if it was empty.
+        */
+        long now = System.nanoTime();
+        if (buckets.size() > PRUNE_AT) prune(now);
+
+        Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket(burst, now));
+        synchronized (bucket) {
+            refill(bucket, now);
+            if (bucket.tokens < 1) return false;
+            bucket.tokens--;
+            return true;
+        }
+    }
+
+    private void refill(Bucket bucket, long now) {
+        // Adds the tokens earned since the bucket was last used
+        bucket.tokens = Math.min(burst, bucket.tokens + (now - bucket.updatedNanos) * perSecond / 1e9);
+        bucket.updatedNanos = now;
+    }
+
+    private void prune(long now) {
+        // Forgets every bucket that has refilled completely; those keys start out full again anyway
+        buckets.values().removeIf(bucket -> {
+            synchronized (bucket) {
+                refill(bucket, now);
+                return bucket.tokens >= burst;
+            }
+        });
+    }
+}
@@ -0,0 +1,377 @@
+/*
+Purpose: Replays recorded games from the game log and checks that the current
+dealing, winner and payout rules still produce the recorded results.
+
+In general:
+Each log file is replayed on its own thread. Decks are rebuilt from the recorded
+shuffle seeds, and showdowns are re-run through Poker.showdownWinner(), the same
+pick the tables make, on the recorded hands. The pot is rebuilt from the recorded
+choices and the current fee and ante in Poker, not from the amounts in the log.
+Dealer games are settled again from those bets and the recorded dealer hands.
+Every place where the replay does not match the recording is reported with its
+line number.
+Tournaments interleave the events of many tables, so each table's shoe, pot and
+payouts are replayed apart, by the table number at the end of its events.
+
+Usage: java Replay game-events.log [more logs...]
+*/
+
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class Replay {
+    // Replay fields
+    private final String fileName;                              // Log being replayed
+    private final Map<Integer, Card[]> hands = new HashMap<>(); // Latest recorded hand of each player
+    private final Map<Integer, double[]> bets = new HashMap<>();    // {ante, play, pairPlus} of each player (dealer games)
+    private final Map<Integer, TableState> tables = new HashMap<>();    // Replayed state of each table, by number
+    private TableState at;                                      // Table of the event being replayed
+    private double prizePool = 0;                               // Pots handed over by tables that broke up
+    private String mode;                                        // Game mode from START (null in logs from before it was recorded)
+    private final List<String> divergences = new ArrayList<>(); // Every mismatch found
+
+    // Counters for the summary
+    private int deals = 0, showdowns = 0, payouts = 0;
+
+    // What is replayed for each table (logs without table numbers are all table 0)
+    private static final class TableState {
+        final Map<Integer, Double> owed = new HashMap<>();  // Payouts expected after the last showdown
+        Card[] dealerHand;          // Dealer's latest recorded hand
+        Card[] deck;                // Shoe rebuilt from the latest shuffle seed
+        int dealt = 0;              // Cards dealt from that shoe so far
+        double pot = 0;             // Pot rebuilt from fees, stakes and pots handed over
+    }
+
+
+
+    // Constructors
+    public Replay(String fileName) {
+        this.fileName = fileName;
+    }
+
+
+
+    // Replay instance methods
+    public Replay run() {
+        /*
+        Reads the log line by line and replays every event.
+
+        In case of an error, the error is recorded as a divergence.
+        */
+        try (BufferedReader in = new BufferedReader(new FileReader(fileName, StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (!line.isEmpty()) replayEvent(line.split("\t"), lineNumber);
+            }
+        }
+        catch (IOException e) {divergences.add("could not read log: " + e.getMessage());}
+        return this;
+    }
+
+    private void replayEvent(String[] f, int lineNumber) {
+        /*
+        Takes in "f" of type String[], the tab separated fields of one event,
+        and "lineNumber" of type int.
+
+        Updates the replayed state of the event's table and records any mismatch.
+        */
+        try {
+            // The table number is split off, so every event has the same fields in any log
+            int number = 0;
+            if (f[f.length - 1].startsWith(GameLog.TABLE)) {
+                number = Integer.parseInt(f[f.length - 1].substring(GameLog.TABLE.length()));
+                f = Arrays.copyOf(f, f.length - 1);
+            }
+            at = tables.computeIfAbsent(number, n -> new TableState());
+
+            switch (f[1]) {
+                case GameLog.START:
+                    mode = f.length > 2 ? f[2] : null;
+                    hands.clear();
+                    bets.clear();
+                    tables.clear();
+                    prizePool = 0;
+                    break;
+
+                case GameLog.JOIN:
+                    // Against the dealer there is no entry fee; every round has its own ante instead
+                    at.pot += stake(f[4], "DEALER".equals(mode) ? 0 : Poker.GAME_FEE, "player " + f[2] + " paid", lineNumber);
+                    break;
+
+                case GameLog.POT:
+                    replayPot(f, lineNumber);
+                    break;
+
+                case GameLog.SHUFFLE:
+                    // Logs from before shoes record no deck count; those shuffled one deck per round
+                    at.deck = Poker.shuffledShoe(Long.parseLong(f[2]), f.length > 3 ? Integer.parseInt(f[3]) : 1);
+                    at.dealt = 0;
+                    break;
+
+                case GameLog.DEAL:
+                    replayDeal(f, lineNumber);
+                    break;
+
+                case GameLog.DECISION:
+                    replayDecision(f, lineNumber);
+                    break;
+
+                case GameLog.ANTE:
+                    // Pair Plus is a table option, so only whether it was bet is taken from the log
+                    double ante = stake(f[3], Poker.GAME_FEE, "player " + f[2] + " anted", lineNumber);
+                    double pairPlus = stake(f[4], Double.parseDouble(f[4]) == 0 ? 0 : ante,
+                            "player " + f[2] + " bet Pair Plus", lineNumber);
+                    bets.put(Integer.parseInt(f[2]), new double[] {ante, 0, pairPlus});
+                    break;
+
+                case GameLog.DEALER:
+                    at.dealerHand = new Card[3];
+                    for (int i = 0; i < 3; i++) at.dealerHand[i] = parseCard(f[2 + i]);
+                    checkDeal(f, 2, "the dealer", lineNumber);
+                    break;
+
+                case GameLog.SETTLE:
+                    replaySettle(f, lineNumber);
+                    break;
+
+                case GameLog.SHOWDOWN:
+                    replayShowdown(f, lineNumber);
+                    break;
+
+                case GameLog.PAYOUT:
+                    replayPayout(f, lineNumber);
+                    break;
+
+                default:
+                    // TOURNAMENT, MOVE, FOLD, BANKRUPT and DROPPED do not change the replayed state
+                    if (f[1].equals("DROPPED")) diverge(lineNumber, "log dropped " + f[2] + " events");
+            }
+        }
+        catch (RuntimeException e) {diverge(lineNumber, "unreadable event: " + String.join(" ", f));}
+    }
+
+    private void replayDeal(String[] f, int lineNumber) {
+        // Checks the recorded hand against the next three cards of the rebuilt shoe
+        int id = Integer.parseInt(f[2]);
+        Card[] recorded = new Card[3];
+        for (int i = 0; i < 3; i++) recorded[i] = parseCard(f[3 + i]);
+        hands.put(id, recorded);
+        deals++;
+        checkDeal(f, 3, "player " + id, lineNumber);
+    }
+
+    private void checkDeal(String[] f, int first, String who, int lineNumber) {
+        // Checks the three recorded cards starting at field "first" against the next three cards of the rebuilt shoe
+        if (at.deck == null) return;    // Logs written before shuffle seeds were recorded
+        String expected = at.deck[at.dealt] + " " + at.deck[at.dealt + 1] + " " + at.deck[at.dealt + 2];
+        at.dealt += 3;
+
+        String actual = f[first] + " " + f[first + 1] + " " + f[first + 2];
+        if (!expected.equals(actual)) {
+            diverge(lineNumber, who + " was dealt " + actual + " but the seed now deals " + expected);
+        }
+    }
+
+    private void replayDecision(String[] f, int lineNumber) {
+        /*
+        Works out what the recorded choice costs under the current rules:
+        continuing pays the game fee, playing against the dealer bets the
+        ante again, and anything else costs nothing. A player recorded as
+        paying nothing to continue could not cover it (the table then marks
+        them bankrupt, or folds their hand), and pays nothing here either.
+        */
+        int id = Integer.parseInt(f[2]);
+        int choice = Integer.parseInt(f[3]);
+        double[] bet = bets.get(id);
+
+        double expected = 0;
+        if (choice == 1 && Double.parseDouble(f[4]) != 0) expected = bet != null ? bet[0] : Poker.GAME_FEE;
+        double paid = stake(f[4], expected, "player " + id + " staked", lineNumber);
+
+        at.pot += paid;
+        if (bet != null) bet[1] = paid;
+    }
+
+    private double stake(String recorded, double expected, String what, int lineNumber) {
+        /*
+        Takes in the "recorded" amount, what the current rules call for,
+        a description of the stake and "lineNumber" of type int.
+
+        Returns the amount the rules call for, and records a divergence if
+        the log says otherwise. Logs from before the game mode was recorded
+        do not say which rules applied, so their amounts are taken as recorded.
+        */
+        double amount = Double.parseDouble(recorded);
+        if (mode == null) return amount;
+
+        if (Math.abs(expected - amount) > 0.005) {
+            diverge(lineNumber, what + " $" + amount + " but the rules now take $" + expected);
+        }
+        return expected;
+    }
+
+    private void replayPot(String[] f, int lineNumber) {
+        /*
+        A table that broke up must hand over its whole rebuilt pot, and the
+        final table must get every pot handed over before it.
+        */
+        boolean out = f[2].equals("out");
+        double amount = Double.parseDouble(f[3]);
+        double expected = out ? at.pot : prizePool;
+        if (Math.abs(expected - amount) > 0.005) {
+            diverge(lineNumber, "a pot of $" + amount + " was moved but the ledger says $" + expected);
+        }
+
+        if (out) {
+            prizePool += amount;
+            at.pot -= amount;
+        }
+        else {
+            prizePool = 0;
+            at.pot += amount;
+        }
+    }
+
+    private void replaySettle(String[] f, int lineNumber) {
+        // Settles the player's recorded bets against the recorded dealer hand and checks what they got back
+        int id = Integer.parseInt(f[2]);
+        double returned = Double.parseDouble(f[3]);
+        double[] bet = bets.remove(id);
+        payouts++;
+
+        if (bet == null || at.dealerHand == null) {
+            diverge(lineNumber, "player " + id + " was settled but placed no bets");
+            return;
+        }
+
+        Card[] dealer = at.dealerHand.clone();
+        int dealerHandType = Poker.handType(dealer);
+        double expected = Poker.settleAgainstDealer(hands.get(id).clone(), dealer, dealerHandType,
+                Poker.dealerQualifies(dealer, dealerHandType), bet[0], bet[1], bet[2]);
+        if (Math.abs(expected - returned) > 0.005) {
+            diverge(lineNumber, "player " + id + " got back $" + returned + " but the rules now pay $" + expected);
+        }
+    }
+
+    private void replayShowdown(String[] f, int lineNumber) {
+        /*
+        Re-runs the showdown over the candidates' recorded hands through
+        Poker.showdownWinner(), exactly as the table picked its winner.
+        */
+        int recordedWinner = Integer.parseInt(f[2]);
+        int[] candidates = new int[f.length - 3];
+        Card[][] candidateHands = new Card[candidates.length][];
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i] = Integer.parseInt(f[3 + i]);
+            candidateHands[i] = hands.get(candidates[i]).clone();
+        }
+        showdowns++;
+
+        int winnerID = Poker.showdownWinner(candidateHands, candidates);
+
+        if (winnerID != recordedWinner) {
+            diverge(lineNumber, "recorded winner " + recordedWinner + " but the rules now pick " + winnerID);
+        }
+
+        // Payouts follow the recorded result, so one divergence is not reported twice
+        at.owed.clear();
+        if (recordedWinner != -1) at.owed.put(recordedWinner, at.pot);
+        else if (candidates.length == 2) {
+            double split = Math.round((at.pot / 2.0) * 100) / 100.0;
+            at.owed.put(candidates[0], split);
+            at.owed.put(candidates[1], split);
+        }
+    }
+
+    private void replayPayout(String[] f, int lineNumber) {
+        // Checks the recorded payout against what the rebuilt pot says is owed; once all is paid, the pot is empty
+        int id = Integer.parseInt(f[2]);
+        double amount = Double.parseDouble(f[3]);
+        Double expected = at.owed.remove(id);
+        payouts++;
+        if (at.owed.isEmpty()) at.pot = 0;
+
+        if (expected == null) diverge(lineNumber, "player " + id + " was paid $" + amount + " but nothing was owed");
+        else if (Math.abs(expected - amount) > 0.005) {
+            diverge(lineNumber, "player " + id + " was paid $" + amount + " but the ledger owes $" + expected);
+        }
+    }
+
+    private void diverge(int lineNumber, String msg) {
+        divergences.add(fileName + ":" + lineNumber + ": " + msg);
+    }
+
+    public String summary() {
+        // Returns a report of the replay, one line per divergence
+        StringBuilder report = new StringBuilder();
+        report.append(fileName).append(": ").append(deals).append(" deals, ")
+              .append(showdowns).append(" showdowns, ").append(payouts).append(" payouts, ")
+              .append(divergences.size()).append(" divergences");
+        for (String divergence : divergences) report.append(System.lineSeparator()).append("  ").append(divergence);
+        return report.toString();
+    }
+
+    public boolean matches() {
+        return divergences.isEmpty();
+    }
+
+
+
+    // Class methods
+    public static Card parseCard(String text) {
+        /*
+        Takes in "text" of type String, a card in the Card.toString() form.
+
+        Returns the card it describes.
+        */
+        String n = text.substring(0, text.length() - 1);
+        String suit = text.substring(text.length() - 1);
+
+        int number;
+        if (n.equals("A")) number = 1;
+        else if (n.equals("J")) number = 11;
+        else if (n.equals("Q")) number = 12;
+        else if (n.equals("K")) number = 13;
+        else number = Integer.parseInt(n);
+
+        int suitIndex = 4;
+        if (suit.equals("♣")) suitIndex = 1;
+        else if (suit.equals("♠")) suitIndex = 2;
+        else if (suit.equals("♦")) suitIndex = 3;
+
+        return new Card(number, suitIndex);
+    }
+
+
+
+    // Main
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: java Replay <game log> [more logs...]");
+            return;
+        }
+
+        // Replays every file in parallel, then reports them in the order given
+        List<Replay> replays = Arrays.stream(args).parallel()
+                .map(fileName -> new Replay(fileName).run())
+                .collect(Collectors.toList());
+
+        boolean allMatch = true;
+        for (Replay replay : replays) {
+            System.out.println(replay.summary());
+            allMatch &= replay.matches();
+        }
+        if (!allMatch) System.exit(1);
+    }
+}
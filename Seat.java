@@ -0,0 +1,140 @@
+/*
+Purpose: A seat at a table, whoever (or whatever) is sitting in it.
+
+In general:
+Holds everything the game needs to know about a player: their name, hand
+and place in the game's list of players, and the slot of their account
+(ID and balance) in the shared AccountStore. How a
+seat hears about the game is left to its type. A PlayerHandler sends
+everything over its connection; a BotSeat has no connection at all and
+makes its decisions right inside the round.
+*/
+
+
+import java.io.IOException;
+
+public abstract class Seat {
+    // NOTE: only the seat's table changes any of this, on the table's own thread.
+    // In a tournament the seat can move to another table, which takes over from then on
+
+    // User data
+    public static final double STARTING_BALANCE = 12;
+    private int slot = -1;              // Player's account in Host.accounts (ID, balance, ...)
+    private final String username;      // Player's user name
+    public Card[] hand = new Card[3];   // Player's hand
+    Seat link;                          // Holds link to next player
+    volatile Table table;               // Table the player is seated at
+    boolean left;                       // Player has been removed from the game
+
+    // Game event variables
+    int decidedRound = -1;              // Last round the player made a decision in
+    TimingWheel.Timeout deadline;       // Deadline of the current decision
+    int seatIndex;                      // Position in the table's ledger this round (dealer games)
+
+
+
+    // Constructor
+    protected Seat(String username, Table table) {
+        /*
+        Takes in "username" of type String and "table" of type Table.
+
+        The seat is given an account, and with it an ID, when the table seats it.
+        */
+        this.username = username;
+        this.table = table;
+    }
+
+
+
+    // Seat methods
+    public void seat() throws IOException {
+        // Opens the player's account at this seat's table
+        this.slot = Host.accounts.open(STARTING_BALANCE, table.getNumber());
+    }
+
+    public void moveTo(Table to) {
+        // Moves the seat, and the table recorded in its account, to another table
+        this.table = to;
+        Host.accounts.setTable(slot, to.getNumber());
+        this.decidedRound = -1;     // Round numbers are per table
+    }
+
+    public void unseat() {
+        // Closes the player's account once they have left the game; nothing else may use the seat after this
+        Host.accounts.close(slot);
+    }
+
+    public void holdHand() {
+        // Records the player's newly dealt hand in their account and counts the round and hand type
+        Host.accounts.setHand(slot, hand);
+        Host.accounts.countRound(slot, Poker.handType(hand.clone()));   // handType() sorts, the hand is shown as dealt
+    }
+
+    public void countWin() {
+        Host.accounts.countWin(slot);
+    }
+
+    public void countFold() {
+        Host.accounts.countFold(slot);
+    }
+
+    public abstract void deliver(String msg);   // Sends "msg" to whoever is in the seat
+    public abstract void startReading();        // Starts listening for the seat's decisions
+    public abstract void closeConnection();     // Ends the seat's connection, if it has one
+
+
+
+    // Game methods
+    public boolean updateBalance(double x) {
+        double temp = Host.accounts.balance(slot);
+        temp += x;
+        if (temp<0){
+            return false;
+        }
+        else {
+            Host.accounts.setBalance(slot, temp);
+            return true;
+        }
+    }
+
+
+
+    // Accessors
+    public int getID() {
+        return Host.accounts.id(slot);
+    }
+
+    public double getBalance() {
+        return Host.accounts.balance(slot);
+    }
+
+    public String getUserName() {
+        return this.username;
+    }
+
+    public int getRounds() {
+        return Host.accounts.rounds(slot);
+    }
+
+    public double getWinRate() {
+        // Returns the share of rounds played that the player won
+        int rounds = getRounds();
+        return rounds == 0 ? 0 : (double) Host.accounts.wins(slot) / rounds;
+    }
+
+    public double getFoldRate() {
+        // Returns the share of rounds played that the player folded
+        int rounds = getRounds();
+        return rounds == 0 ? 0 : (double) Host.accounts.folds(slot) / rounds;
+    }
+
+    public int getHandTypeCount(int type) {
+        // Returns how many hands of the given Poker.handType() the player has been dealt
+        return Host.accounts.handTypes(slot, type);
+    }
+
+    public double getNet() {
+        // Returns how much the player has won or lost since sitting down
+        return getBalance() - STARTING_BALANCE;
+    }
+}
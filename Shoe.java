@@ -0,0 +1,109 @@
+/*
+Purpose: Holds the cards a table deals from: one or more decks shuffled together,
+dealt continuously from round to round.
+
+In general:
+A cut card is placed part way into the shoe. Rounds keep dealing from where
+the last one stopped until the cut card is reached, and only then is a new
+shoe put in play. The next shoe is always shuffled ahead of time on a
+background thread, so swapping it in never shuffles on the deal path.
+
+Every shoe is built from a seed, which is written to the game log when the
+shoe is put in play, so Replay can rebuild it.
+*/
+
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class Shoe {
+    // Config fields
+    public static final int DECKS = Math.max(Integer.getInteger("poker.decks", 1), 1);
+    public static final double PENETRATION =                    // Share of the shoe dealt before the cut card
+            Math.min(Math.max(Double.parseDouble(System.getProperty("poker.penetration", "0.75")), 0.1), 1.0);
+
+    // Shoe fields
+    private final int decks;            // # of decks shuffled together
+    private final int cut;              // Position of the cut card
+    private Card[] cards;               // Shoe in play
+    private int position;               // Next card to deal
+    private CompletableFuture<Shuffled> next;   // Next shoe, shuffled in the background
+
+    // A shuffled shoe and the seed it was built from
+    private static final class Shuffled {
+        final long seed;
+        final Card[] cards;
+
+        Shuffled(long seed, Card[] cards) {
+            this.seed = seed;
+            this.cards = cards;
+        }
+    }
+
+
+
+    // Constructors
+    public Shoe(int decks, double penetration) {
+        /*
+        Takes in "decks" of type int and "penetration" of type double.
+
+        Starts shuffling the first shoe right away.
+        */
+        this.decks = decks;
+        this.cut = (int) (52 * decks * penetration);
+        this.next = shuffleAhead();
+    }
+
+
+
+    // Instance methods
+    public void prepare(int cardsNeeded) {
+        /*
+        Takes in "cardsNeeded" of type int, the cards the coming round deals.
+
+        Puts the next shoe in play if the cut card has been reached or the
+        shoe cannot cover the round, and starts shuffling the one after it.
+        Throws IllegalArgumentException if even a fresh shoe can't cover the round.
+        */
+        if (cardsNeeded > 52 * decks) {
+            throw new IllegalArgumentException("A round of " + cardsNeeded + " cards needs more than " + decks + " deck(s)");
+        }
+        if (cards != null && position < cut && cards.length - position >= cardsNeeded) return;
+
+        Shuffled shuffled = next.join();    // Normally finished long ago
+        next = shuffleAhead();
+
+        cards = shuffled.cards;
+        position = 0;
+        GameLog.shuffle(shuffled.seed, decks);
+    }
+
+    public Card deal() {
+        // Returns the next card in the shoe
+        return cards[position++];
+    }
+
+    private CompletableFuture<Shuffled> shuffleAhead() {
+        // Shuffles a new shoe on a background thread
+        return CompletableFuture.supplyAsync(() -> {
+            long seed = ThreadLocalRandom.current().nextLong();
+            return new Shuffled(seed, Poker.shuffledShoe(seed, decks));
+        });
+    }
+
+
+
+    // Accessors
+    public int getDecks() {
+        return this.decks;
+    }
+
+    public static int maxPlayers(boolean withDealer) {
+        /*
+        Takes in "withDealer" of type boolean, whether the dealer is dealt a hand too.
+
+        Returns the most players a table can seat, so that a fresh shoe covers a full round.
+        */
+        return (52 * DECKS - (withDealer ? 3 : 0)) / 3;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+Purpose: Shares the public events of one table (joins, folds, pot changes and
+showdown results) with any number of read-only spectators.
+
+In general:
+Every table has its own feed, so spectators of a table only see that table.
+Events are written once into a fixed-size ring. Publishing only claims the next
+sequence number and stores the event, so the game never waits on spectators.
+Each spectator reads the ring at its own pace with its own cursor. A spectator
+that falls more than a full ring behind is sent a snapshot of the table instead
+and carries on from the newest event.
+*/
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+public class SpectatorFeed {
+    // Ring fields
+    private final int capacity;         // Must be a power of two
+    private final int mask;
+    private final AtomicReferenceArray<Event> ring;
+    private final AtomicLong next = new AtomicLong();  // Sequence number of the next event
+
+    // Snapshot sent to spectators who join late or fall behind
+    private final Supplier<String> snapshot;
+
+
+
+    // Event held in one slot of the ring
+    static final class Event {
+        final long seq;     // Sequence number, used to tell whether a slot was overwritten
+        final String msg;   // The public message
+
+        Event(long seq, String msg) {
+            this.seq = seq;
+            this.msg = msg;
+        }
+    }
+
+
+
+    // Constructor
+    public SpectatorFeed(int capacity, Supplier<String> snapshot) {
+        /*
+        Takes in "capacity" of type int, the # of events kept (a power of
+        two), and "snapshot", the public state of the table.
+        */
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.snapshot = snapshot;
+    }
+
+
+
+    // Feed methods
+    public void publish(String msg) {
+        /*
+        Takes in "msg" of type String.
+
+        Returns if msg is null.
+        Otherwise, stores msg as the next event, overwriting the oldest one.
+        */
+        if (msg == null) return;
+
+        long seq = next.getAndIncrement();
+        ring.set((int) seq & mask, new Event(seq, msg));
+    }
+
+    public Event read(long seq) {
+        /*
+        Takes in "seq" of type long.
+
+        Returns the event with that sequence number, or null if it has not
+        been published yet. If it has already been overwritten, the newer
+        event in its slot is returned and the caller can tell by its seq.
+        */
+        Event event = ring.get((int) seq & mask);
+        if (event == null || event.seq < seq) return null;
+        return event;
+    }
+
+    public boolean lagging(long seq) {
+        // Returns whether a reader at "seq" has been lapped by the writers
+        return next.get() - seq > capacity;
+    }
+
+    public long head() {
+        // Returns the sequence number the next event will get
+        return next.get();
+    }
+
+    public String snapshot() {
+        return snapshot.get();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+Purpose: Streams the public events of one table to one spectator.
+Spectators have no seat, pay no fee and cannot send anything to the game.
+*/
+
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.util.concurrent.locks.LockSupport;
+
+public class SpectatorHandler implements Runnable {
+    // Server fields
+    private final Socket socket;            // Holds spectator connection to server
+    private BufferedWriter toSpectator;     // Used to send messages to the spectator
+
+    // Feed fields
+    private final SpectatorFeed feed;       // Feed of the table being watched
+    private final int tableNumber;          // Number of that table
+    private long cursor;                    // Sequence number of the next event to send
+
+
+
+    // Constructor
+    public SpectatorHandler(Socket spectatorSocket, SpectatorFeed feed, int tableNumber) {
+        // Takes in "spectatorSocket" of type Socket, and the feed and number of the table to watch
+        this.socket = spectatorSocket;
+        this.feed = feed;
+        this.tableNumber = tableNumber;
+    }
+
+
+
+    // Server instance methods
+    public void closeEverything() {
+        /*
+        Closes the connection between the spectator and host.
+
+        In case of an error, the stack trace is printed
+        */
+        try {
+            if (socket != null) socket.close();
+            if (toSpectator != null) toSpectator.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void sendSnapshot() throws IOException {
+        // Sends the current state of the table and skips ahead to the newest event
+        cursor = feed.head();
+        toSpectator.write("[HOST]: " + feed.snapshot());
+        toSpectator.newLine();
+    }
+
+    @Override
+    public void run() {
+        /*
+        Sends a snapshot of the table, then every public event as it is published.
+        Events are written in batches with one flush per batch.
+
+        If the spectator falls too far behind, a new snapshot is sent instead
+        of the missed events.
+
+        Ends when the spectator disconnects.
+        */
+        try {
+            toSpectator = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+            toSpectator.write("[HOST]: You are spectating table " + tableNumber + ".");
+            toSpectator.newLine();
+            sendSnapshot();
+            toSpectator.flush();
+
+            while (!socket.isClosed()) {
+                boolean sent = false;
+
+                if (feed.lagging(cursor)) {
+                    sendSnapshot();
+                    sent = true;
+                }
+
+                SpectatorFeed.Event event;
+                while ((event = feed.read(cursor)) != null) {
+                    if (event.seq != cursor) {
+                        // Slot was overwritten before we got to it
+                        sendSnapshot();
+                    } else {
+                        toSpectator.write(event.msg);
+                        toSpectator.newLine();
+                        cursor++;
+                    }
+                    sent = true;
+                }
+
+                if (sent) toSpectator.flush();
+                else LockSupport.parkNanos(50_000_000);
+            }
+        }
+        catch (IOException e) {
+            // Spectator left; nothing else to clean up
+        }
+        finally {closeEverything();}
+    }
+}
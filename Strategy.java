@@ -0,0 +1,227 @@
+/*
+Purpose: Tells a player whether continuing with their hand is worth the game fee.
+
+In general:
+The solver (main) compares every possible 3-card hand against every hand an
+opponent could hold with the remaining 49 cards, using the real rules in
+Poker.compareHands(), and records how often each hand wins and ties. The
+results are written to a small lookup table (strategy.bin) that ships with
+the game. At the table, a hint is then one array lookup plus a little
+arithmetic with the current pot and fee.
+
+The table is memory mapped the first time a hint is needed, so nothing is
+parsed or copied at startup. -Dpoker.strategy=<file> points at another table.
+
+Usage (regenerates the table): java Strategy [strategy.bin]
+*/
+
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+
+public class Strategy {
+    // Table fields
+    public static final String FILE = "strategy.bin";
+    public static final int HANDS = 22100;      // 52 choose 3
+    private static final int MAGIC = 0x33435048;  // "3CPH"
+    private static final int SCALE = 65535;       // Probabilities are stored as fractions of this
+    private static final int HEADER = 8;          // Magic and hand count, then a win and tie char per hand
+
+    // Win and tie chance of each hand heads-up, in handIndex() order; mapped on first use
+    private static final class Odds {
+        static final ByteBuffer ODDS = load();
+    }
+
+
+
+    // Lookup methods
+    public static int handIndex(Card[] hand) {
+        /*
+        Takes in "hand" of type Card[].
+
+        Returns a number from 0 to 22099 that is unique to the three
+        cards, whatever order they are in. The cards must be different
+        (see covers()).
+        */
+        int a = hand[0].index, b = hand[1].index, c = hand[2].index;
+        if (a > b) {int t = a; a = b; b = t;}
+        if (b > c) {int t = b; b = c; c = t;}
+        if (a > b) {int t = a; a = b; b = t;}
+        return a + b * (b - 1) / 2 + c * (c - 1) * (c - 2) / 6;
+    }
+
+    public static boolean available() {
+        // Returns whether the lookup table could be loaded
+        return Odds.ODDS != null;
+    }
+
+    public static boolean covers(Card[] hand) {
+        /*
+        Takes in "hand" of type Card[].
+
+        Returns whether the lookup table has odds for the hand. The table
+        is solved for one deck, so a hand dealt from a bigger shoe that
+        holds the same card twice is not in it.
+        */
+        if (!available()) return false;
+        int a = hand[0].index, b = hand[1].index, c = hand[2].index;
+        return a != b && b != c && a != c;
+    }
+
+    public static double equity(Card[] hand, int opponents) {
+        /*
+        Takes in "hand" of type Card[] and "opponents" of type int.
+
+        Returns the share of the pot the hand can expect to take against
+        that many opponents. Opponents are treated as independent, so the
+        heads-up equity is raised to the number of opponents.
+        */
+        int at = HEADER + handIndex(hand) * 2 * Character.BYTES;
+        double headsUp = (Odds.ODDS.getChar(at) + Odds.ODDS.getChar(at + Character.BYTES) / 2.0) / SCALE;
+        return Math.pow(headsUp, Math.max(opponents, 1));
+    }
+
+    public static double continueValue(Card[] hand, int opponents, double pot, double fee) {
+        /*
+        Takes in "hand" of type Card[], "opponents" of type int, "pot" of
+        type double and "fee" of type double.
+
+        Returns how much continuing is expected to win or lose compared to
+        folding: the hand's share of the pot after paying the fee, less the fee.
+        */
+        return equity(hand, opponents) * (pot + fee) - fee;
+    }
+
+    public static boolean hint(StringBuilder to, Card[] hand, int opponents, double pot, double fee) {
+        /*
+        Takes in "to" of type StringBuilder, and the same as continueValue().
+
+        Appends a one line hint for the continue/fold decision (without a
+        line break) to "to", so a table can add it to the message it is
+        already building. Returns false, appending nothing, if the table
+        has no odds for the hand.
+        */
+        if (!covers(hand)) return false;
+
+        double value = Math.round(continueValue(hand, opponents, pot, fee) * 100) / 100.0;
+        if (value >= 0) to.append("Hint: continue (expected +$").append(value).append(')');
+        else to.append("Hint: fold (continuing is expected to lose $").append(-value).append(')');
+        return true;
+    }
+
+
+
+    // Loading
+    private static ByteBuffer load() {
+        /*
+        Maps the lookup table from the file system, or failing that reads
+        it from the classpath (such as from inside a jar).
+        Returns null if it cannot be found or is not a lookup table.
+        */
+        ByteBuffer table = null;
+        Path file = Path.of(System.getProperty("poker.strategy", FILE));
+        try {
+            if (Files.isRegularFile(file)) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    table = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+            }
+            else {
+                try (InputStream in = Strategy.class.getResourceAsStream("/" + FILE)) {
+                    if (in != null) table = ByteBuffer.wrap(in.readAllBytes());
+                }
+            }
+        }
+        catch (IOException e) {return null;}
+
+        boolean valid = table != null && table.capacity() >= HEADER + HANDS * 2 * Character.BYTES &&
+                table.getInt(0) == MAGIC && table.getInt(Integer.BYTES) == HANDS;
+        return valid ? table : null;
+    }
+
+
+
+    // Solver
+    public static void main(String[] args) throws IOException {
+        String fileName = args.length > 0 ? args[0] : FILE;
+
+        // Every hand, in handIndex() order
+        Card[][] hands = new Card[HANDS][];
+        Card[] deck = new Card[52];
+        Card.initializeDeck(deck);
+        for (int c = 2, i = 0; c < 52; c++) {
+            for (int b = 1; b < c; b++) {
+                for (int a = 0; a < b; a++) hands[i++] = new Card[] {deck[a], deck[b], deck[c]};
+            }
+        }
+
+        // Each pair of hands is compared once; threads keep their own counts and they are summed after.
+        // There is no identity to reduce from: sum() adds into its first argument, which must be a part's own array
+        int parts = Math.max(1, Runtime.getRuntime().availableProcessors());
+        long start = System.currentTimeMillis();
+        long[][] counts = IntStream.range(0, parts).parallel()
+                .mapToObj(part -> solvePart(hands, part, parts))
+                .reduce(Strategy::sum).orElseThrow();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(HANDS);
+            for (int i = 0; i < HANDS; i++) {
+                long total = counts[0][i] + counts[1][i] + counts[2][i];
+                out.writeChar((int) Math.round((double) counts[0][i] * SCALE / total));
+                out.writeChar((int) Math.round((double) counts[1][i] * SCALE / total));
+            }
+        }
+        System.out.println("Wrote " + fileName + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private static long[][] solvePart(Card[][] hands, int part, int parts) {
+        /*
+        Compares every hand i (where i % parts == part) with every later
+        hand that shares no cards with it, and counts wins, ties and losses
+        for both hands.
+
+        Returns the counts as {wins, ties, losses}, indexed by hand.
+        */
+        long[][] counts = new long[3][HANDS];
+        Card[] h1 = new Card[3], h2 = new Card[3];
+
+        for (int i = part; i < HANDS; i += parts) {
+            Card[] mine = hands[i];
+            for (int j = i + 1; j < HANDS; j++) {
+                Card[] theirs = hands[j];
+                if (overlap(mine, theirs)) continue;
+
+                // compareHands() sorts the hands it is given, so it gets copies
+                System.arraycopy(mine, 0, h1, 0, 3);
+                System.arraycopy(theirs, 0, h2, 0, 3);
+                int result = Poker.compareHands(h1, h2);
+
+                if (result > 0) {counts[0][i]++; counts[2][j]++;}
+                else if (result < 0) {counts[2][i]++; counts[0][j]++;}
+                else {counts[1][i]++; counts[1][j]++;}
+            }
+        }
+        return counts;
+    }
+
+    private static boolean overlap(Card[] h1, Card[] h2) {
+        for (Card a : h1) for (Card b : h2) if (a == b) return true;
+        return false;
+    }
+
+    private static long[][] sum(long[][] x, long[][] y) {
+        // Adds y's counts into x and returns x
+        for (int k = 0; k < 3; k++) for (int i = 0; i < HANDS; i++) x[k][i] += y[k][i];
+        return x;
+    }
+}
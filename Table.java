@@ -0,0 +1,1154 @@
+/*
+Purpose: Runs one table of poker, from the lobby through dealing, decisions,
+the showdown and paying out the winner.
+
+In general:
+A table is an actor. Everything that happens to it (joins, decisions,
+deadlines, disconnects, re-attaches) is posted to its mailbox as a message,
+and the messages are handled one at a time, in order, on a small pool of
+worker threads shared by every table. Only the table's own messages ever
+touch its game state, so nothing needs locks, flags shared across threads
+or sleeps to let other threads catch up. What players are sent is rendered
+here and written by their Outbox, so the next round is dealt and rendered
+while the last one's output is still being written.
+
+Each round moves through LOBBY -> DEAL -> DECIDE -> SHOWDOWN -> SETTLE.
+
+In a dealer game (Host.Mode.DEALER) nobody is eliminated: every player
+puts up an ante (and optionally a Pair Plus bet), then plays or folds
+against the dealer's hand. All seats are settled together at the end of
+each round, in one pass over the round's ledger.
+
+At a tournament table, players knocked out are reported to the Tournament,
+and players are passed to and from other tables between rounds when it asks.
+A tournament table that is too small to deal waits (WAIT) for players to
+arrive or for the table to be broken up; only the final table plays down
+to a showdown.
+*/
+
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+public class Table {
+    // Round phases
+    public enum Phase {LOBBY, DEAL, DECIDE, SHOWDOWN, SETTLE, WAIT}
+
+    // Actor fields
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+                Thread worker = new Thread(runnable, "table-worker");
+                worker.setDaemon(true);
+                return worker;
+            });
+    private static final int BATCH = 64;    // Most messages handled before letting other tables run
+    private final ConcurrentLinkedQueue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();   // Whether the table is queued on a worker
+    private final ConcurrentLinkedQueue<Seat> lobby = new ConcurrentLinkedQueue<>();  // Joined, not seated yet
+    private final AtomicBoolean lobbyPosted = new AtomicBoolean(); // Whether a message to seat them is queued
+
+    // Game fields
+    private static final AtomicInteger tables = new AtomicInteger();    // Tables opened so far
+    private final int number = tables.incrementAndGet();    // Table number, recorded in its players' accounts
+    private final Poker game = new Poker(); // Creates a game of Poker
+    private Phase phase = Phase.LOBBY;      // Current phase of the round
+    private int playerCount = 0;            // Keeps track of the number of players
+    private int round = 0;                  // Current round number
+    private int pending = 0;                // Decisions still to be made this round
+    private final List<Seat> bankrupt = new ArrayList<>();     // Couldn't pay to continue this round
+    private final CountDownLatch finished = new CountDownLatch(1);      // Released when the game is over
+    private final TableStats stats = new TableStats();                  // Rounds per minute and average pot
+
+    // Dealer game fields
+    private final boolean dealerMode = Host.mode == Host.Mode.DEALER;
+    private Seat[] seats = new Seat[0];     // Seats dealt into the current round, indexed by Seat.seatIndex
+    private double[] ante = new double[0];  // Ante of each seat this round
+    private double[] play = new double[0];  // Play bet of each seat this round (0 if they folded)
+    private double[] pairPlus = new double[0];  // Pair Plus bet of each seat this round
+    private int seated = 0;                 // # of seats in this round's ledger
+
+    // Tournament fields
+    private final Tournament tournament;    // Tournament the table is part of, or null
+    private boolean finalTable;             // Plays down to a winner, like a table on its own
+    private final List<Seat> arriving = new ArrayList<>();  // Moved here mid-round, seated when it ends
+    private List<Table> departures = List.of();  // One table per player to send on once the round ends
+    private boolean breakingUp;             // Closes once its players are sent on
+
+    // Spectator fields
+    private final SpectatorFeed feed;       // Public events of this table, read by its spectators
+    private double potPublished = -1;       // Pot last sent to spectators
+    private volatile String snapshot = "";  // Public state of the table, read by spectator threads
+
+    // Rendering fields
+    // The fixed lines of the hand display are built once; only the three card faces change per hand
+    private static final String NL = System.lineSeparator();
+    private static final String FRAME = "---------\t---------\t---------";
+    private static final String BLANK = "|       |\t|       |\t|       |";
+    private static final char[] HAND_TOP = ("Your hand:" + NL + FRAME + NL + BLANK + NL).toCharArray();
+    private static final char[] HAND_BOTTOM = (NL + BLANK + NL + FRAME + NL).toCharArray();
+    private final StringBuilder render = new StringBuilder(256);   // Reused for every player's hand and stats
+    private static final String[] HAND_NAMES =  // Names of each Poker.handType()
+            {"straight flush", "trips", "straight", "flush", "pair", "high card"};
+    private static final String MENU = NL +
+            "> [1] Continue to next round" + NL +
+            "> [2] Fold and leave the game" + NL +
+            "> Note: A number outside the range will result in folding from the round" + NL +
+            "> Choice:" + NL;
+    private static final String DEALER_MENU = NL +
+            "> [1] Play against the dealer (bet your ante again)" + NL +
+            "> [2] Fold this hand" + NL +
+            "> [3] Leave the table" + NL +
+            "> Note: A number outside the range will fold the hand" + NL +
+            "> Choice:" + NL;
+
+
+
+    // Constructors
+    public Table() {
+        this(null);
+    }
+
+    public Table(Tournament tournament) {
+        /*
+        Takes in "tournament" of type Tournament, or null for a table on its own.
+
+        A tournament table's spectators are also shown the leaderboard, and
+        keep fewer events, since a tournament can have thousands of tables.
+        */
+        this.tournament = tournament;
+        if (tournament == null) feed = new SpectatorFeed(1 << 12, this::snapshot);
+        else feed = new SpectatorFeed(1 << 8, () -> snapshot + " | " + tournament.snapshot());
+    }
+
+
+
+    // Actor methods
+    public void post(Runnable message) {
+        /*
+        Takes in "message" of type Runnable.
+
+        Adds the message to the mailbox and, if the table is not already
+        queued, queues it on a worker. Safe to call from any thread.
+        */
+        mailbox.add(message);
+        if (scheduled.compareAndSet(false, true)) WORKERS.execute(this::drain);
+    }
+
+    private void drain() {
+        /*
+        Handles up to a batch of messages, then gives the worker back.
+        If more messages are waiting, the table queues itself again.
+        */
+        GameLog.atTable(number);
+        for (int i = 0; i < BATCH; i++) {
+            Runnable message = mailbox.poll();
+            if (message == null) break;
+
+            try {message.run();}
+            catch (RuntimeException e) {recover(e);}
+        }
+        GameLog.atTable(0);    // The worker may run another table next
+
+        scheduled.set(false);
+        if (!mailbox.isEmpty() && scheduled.compareAndSet(false, true)) WORKERS.execute(this::drain);
+    }
+
+    private void recover(RuntimeException e) {
+        /*
+        Takes in "e" of type RuntimeException, thrown by a message.
+
+        A message that fails while a round is being dealt or decided would
+        leave the table waiting on decisions that never come, so the round
+        is ended: everyone still to decide sits it out, like a disconnected
+        player. If ending the round fails too, the game is over.
+        */
+        e.printStackTrace();
+        if (phase != Phase.DEAL && phase != Phase.DECIDE) return;
+
+        phase = Phase.DECIDE;
+        for (Seat curr = game.getHead(); curr != null; curr = curr.link) {
+            if (curr.decidedRound == round) continue;
+            curr.decidedRound = round;
+            if (curr.deadline != null) curr.deadline.cancel();
+            GameLog.decision(curr.getID(), 0, 0);
+        }
+        pending = 0;
+
+        try {endRound();}
+        catch (RuntimeException again) {
+            again.printStackTrace();
+            finish();
+        }
+    }
+
+    public void join(Seat player) {
+        /*
+        Takes in "player" of type Seat.
+
+        Queues the player to be seated and makes sure the table has a
+        message coming that seats everyone queued. Players who join while
+        that message is waiting are seated by it too, in one batch.
+        Safe to call from any thread.
+        */
+        lobby.add(player);
+        if (!lobbyPosted.compareAndSet(false, true)) return;
+
+        post(() -> {
+            lobbyPosted.set(false);     // Cleared first, so players queued from now on get a new message
+            List<Seat> batch = new ArrayList<>();
+            for (Seat seat; (seat = lobby.poll()) != null; ) batch.add(seat);
+            onJoin(batch);
+        });
+    }
+
+    public void awaitFinished() throws InterruptedException {
+        // Blocks the caller (never a table worker) until the game is over
+        finished.await();
+    }
+
+    public String snapshot() {
+        // Returns the public state of the table; safe to call from any thread
+        return snapshot;
+    }
+
+
+
+    // Message handlers (only ever run on the table's turn)
+    void onJoin(List<? extends Seat> players) {
+        /*
+        Takes in "players" of type List<? extends Seat>, people or bots
+        that arrived together.
+
+        Seats each player: gives them an ID (and a person a session token),
+        takes the game fee (elimination games only) and adds them to the game.
+        The whole group is then announced in one message.
+        Players can only join while the table is in the lobby.
+        */
+        StringBuilder names = new StringBuilder();
+        Seat joined = null;     // The only player who joined, if just one did
+        int count = 0;
+
+        for (Seat player : players) {
+            if (phase != Phase.LOBBY) {
+                player.deliver("[HOST]: The game has already started.");
+                player.closeConnection();
+                continue;
+            }
+
+            try {player.seat();}
+            catch (IOException e) {
+                player.closeConnection();
+                continue;
+            }
+
+            // Against the dealer there is no entry fee; every round has its own ante instead
+            double fee = dealerMode ? 0 : game.getGameFee();
+            player.updateBalance(fee * -1);
+            game.addToPot(fee);
+            game.addPlayer(player);
+            playerCount++;
+            GameLog.join(player.getID(), player.getUserName(), fee);
+
+            if (count++ > 0) names.append(", ");
+            names.append(player.getUserName());
+            joined = player;
+            player.startReading();
+        }
+        if (count == 0) return;
+
+        if (count == 1) broadcastMsg(joined, "[HOST]: " + names + " has joined the game!");
+        else broadcastMsg("[HOST]: " + names + " have joined the game!");
+        updateSnapshot();
+    }
+
+    void onStart() {
+        /*
+        Leaves the lobby and deals the first round.
+
+        A tournament table reports how many players it has, and waits
+        if it has too few to deal until the tournament sends it more.
+        */
+        if (phase != Phase.LOBBY) return;
+
+        if (tournament != null) {
+            int count = playerCount;
+            tournament.post(() -> tournament.onStarted(this, count));
+            gameIntro();
+            if (playerCount < 3) waitForPlayers();
+            else deal();
+            return;
+        }
+
+        if (playerCount == 0) return;
+        gameIntro();
+        deal();
+    }
+
+    void onDecision(PlayerHandler player, String response) {
+        /*
+        Takes in "player" of type PlayerHandler and "response" of type String.
+
+        Applies the player's choice if the table is waiting on them;
+        anything sent at other times is ignored.
+        */
+        if (phase != Phase.DECIDE || player.table != this || player.left || player.decidedRound == round) return;
+
+        int choice;
+        try {choice = Integer.parseInt(response.trim());}
+        catch (NumberFormatException e) {choice = 0;}   // Treated like any number outside the menu
+
+        decide(player, choice, false);
+    }
+
+    void onDeadline(PlayerHandler player, int deadlineRound) {
+        /*
+        Takes in "player" of type PlayerHandler and "deadlineRound" of type int.
+
+        Makes the host's default decision for a player who has not decided
+        in time. A disconnected player sits the round out instead.
+        */
+        if (phase != Phase.DECIDE || deadlineRound != round || player.table != this || player.left ||
+                player.decidedRound == round) return;
+
+        if (player.disconnected) {
+            player.decidedRound = round;
+            pending--;
+            GameLog.decision(player.getID(), 0, 0);
+            if (pending == 0) endRound();
+            return;
+        }
+
+        decide(player, Host.defaultAction == Host.DefaultAction.CONTINUE ? 1 : 2, true);
+    }
+
+    void onDisconnect(PlayerHandler player, Socket lost) {
+        /*
+        Takes in "player" of type PlayerHandler and "lost" of type Socket,
+        the connection that failed.
+
+        Holds the player's seat, balance and hand for the grace period.
+        Does nothing if the player already left or re-attached on a new connection.
+        Passed on to the player's new table if they were moved.
+        */
+        if (forwarded(player, at -> at.onDisconnect(player, lost))) return;
+        if (player.left || player.disconnected || lost != player.getSocket()) return;
+
+        player.disconnected = true;
+        player.closeConnection();
+        player.grace = Host.deadlines.schedule(() -> post(() -> onGraceOver(player)), Host.sessionGraceMillis);
+        System.out.println(player.getUserName() + " lost connection, holding seat...");
+    }
+
+    void onWriteFailed(PlayerHandler player, Outbox outbox) {
+        /*
+        Takes in "player" of type PlayerHandler and "outbox" of type Outbox,
+        the outbox of the connection a write failed on.
+
+        Keeps whatever never reached the player, so it is replayed when
+        they re-attach, and treats the connection as lost. Does nothing
+        if the player has re-attached on a new connection since.
+        */
+        if (forwarded(player, at -> at.onWriteFailed(player, outbox))) return;
+        if (player.getOutbox() != outbox) return;
+
+        player.keepUnsent(outbox.takeUnsent());
+        onDisconnect(player, outbox.getSocket());
+    }
+
+    void onGraceOver(PlayerHandler player) {
+        // Removes a player who did not re-attach within the grace period
+        if (forwarded(player, at -> at.onGraceOver(player))) return;
+        if (player.left || !player.disconnected) return;
+
+        removeFromGame(player);
+        if (phase == Phase.DECIDE && pending == 0) endRound();
+    }
+
+    void onReattach(PlayerHandler player, Socket socket, BufferedReader in, BufferedWriter out) {
+        /*
+        Takes in the player and their new connection.
+
+        Swaps the connection into the held seat, replays what the player
+        missed and resends the hand, stats and menu. Turns the connection
+        away if the seat is gone.
+        */
+        if (forwarded(player, at -> at.onReattach(player, socket, in, out))) return;
+        try {
+            if (player.left) {
+                out.write("[HOST]: Your session has expired, please rejoin.");
+                out.newLine();
+                out.flush();
+                socket.close();
+                return;
+            }
+
+            if (player.grace != null) player.grace.cancel();
+            player.reattach(socket, in, out);
+        }
+        catch (IOException e) {
+            player.closeEverything(socket, in, out);
+            return;
+        }
+        System.out.println(player.getUserName() + " re-attached to their seat..");
+
+        if (phase == Phase.DECIDE) {
+            showHand();
+            printStats();
+            printMenu();
+        }
+        player.startReading();
+    }
+
+    void onSendAway(List<Table> destinations, boolean breakUp) {
+        /*
+        Takes in "destinations" of type List<Table>, one table per player
+        the tournament wants sent on, and "breakUp" of type boolean.
+
+        Sends the players once the current round is over, or right away
+        if no round is being played.
+        */
+        departures = destinations;
+        breakingUp = breakUp;
+        if (phase != Phase.DECIDE) sendAway();
+    }
+
+    void onArrive(Seat player) {
+        /*
+        Takes in "player" of type Seat, moved here by the tournament.
+
+        Seats the player, or holds them until the current round is over,
+        and confirms the arrival to the tournament. A table that was
+        waiting deals again once it has enough players.
+        */
+        if (phase == Phase.DECIDE) arriving.add(player);
+        else seatArrival(player);
+
+        int count = playerCount + arriving.size();
+        tournament.post(() -> tournament.onArrived(this, count));
+
+        if (phase == Phase.WAIT && playerCount >= 3) deal();
+    }
+
+    void onFinalTable(double prizePool) {
+        /*
+        Takes in "prizePool" of type double, the pots of every table that broke up.
+
+        Makes this the final table: the prize pool goes into the pot,
+        and the table plays down to a showdown like a table on its own.
+        */
+        finalTable = true;
+        game.addToPot(prizePool);
+        GameLog.potIn(prizePool);
+        broadcastMsg("[HOST]: This is the final table! The pot is $" + game.getPot());
+
+        if (phase != Phase.WAIT) return;
+        if (playerCount == 0) finish();
+        else if (playerCount <= 2) showdown();
+        else deal();
+    }
+
+
+
+    // Round phases
+    private void deal() {
+        /*
+        Deals a new hand to every player, shows each player their hand,
+        the stats and the menu, and starts the deadline of each decision.
+        */
+        phase = Phase.DEAL;
+        round++;
+        if (!dealerMode) game.dealCards();
+        else if (takeAntes()) game.dealCards(true);
+        else {
+            finish();
+            return;
+        }
+
+        showHand();
+        printStats();
+        printMenu();
+
+        phase = Phase.DECIDE;
+        pending = playerCount;
+        int dealtRound = round;
+        boolean hasBots = false;
+        for (Seat curr = game.getHead(); curr != null; curr = curr.link) {
+            if (curr instanceof PlayerHandler player) {
+                player.deadline = Host.deadlines.schedule(() -> post(() -> onDeadline(player, dealtRound)),
+                        Host.decisionTimeoutMillis);
+            }
+            else hasBots = true;
+        }
+        if (hasBots) post(() -> botsDecide(dealtRound));
+    }
+
+    private boolean takeAntes() {
+        /*
+        Takes every player's ante (and Pair Plus bet, if the table offers it)
+        and records them in the round's ledger. Players who cannot cover
+        their bets leave the table.
+
+        Returns false if nobody is left to play.
+        */
+        double stake = game.getGameFee();
+        double side = Host.pairPlus ? stake : 0;
+
+        // Collected first, since leaving removes a player from the list
+        List<Seat> broke = new ArrayList<>();
+        for (Seat curr = game.getHead(); curr != null; curr = curr.link) {
+            if (curr.getBalance() < stake + side) broke.add(curr);
+        }
+        for (Seat player : broke) {
+            GameLog.bankrupt(player.getID());
+            player.deliver("[HOST]: You can't cover the ante.");
+            removeFromGame(player);
+        }
+
+        if (seats.length < playerCount) {
+            seats = new Seat[playerCount];
+            ante = new double[playerCount];
+            play = new double[playerCount];
+            pairPlus = new double[playerCount];
+        }
+
+        seated = 0;
+        for (Seat curr = game.getHead(); curr != null; curr = curr.link) {
+            curr.updateBalance((stake + side) * -1);
+            game.addToPot(stake + side);
+            GameLog.ante(curr.getID(), stake, side);
+
+            curr.seatIndex = seated;
+            seats[seated] = curr;
+            ante[seated] = stake;
+            play[seated] = 0;
+            pairPlus[seated] = side;
+            seated++;
+        }
+        return seated > 0;
+    }
+
+    private void botsDecide(int dealtRound) {
+        /*
+        Takes in "dealtRound" of type int.
+
+        Makes the decision of every bot still in the round. Runs as its own
+        message right after the deal, so the list of players is not changed
+        while it is being dealt to, and a table of only bots moves on to the
+        next round without nesting one round inside another.
+        */
+        if (phase != Phase.DECIDE || dealtRound != round) return;
+
+        // Collected first, since folding removes a bot from the list
+        List<BotSeat> bots = new ArrayList<>();
+        for (Seat curr = game.getHead(); curr != null; curr = curr.link) {
+            if (curr instanceof BotSeat bot && bot.decidedRound != round) bots.add(bot);
+        }
+
+        for (BotSeat bot : bots) {
+            if (phase != Phase.DECIDE || dealtRound != round) return;  // Round ended early
+            if (bot.left || bot.decidedRound == round) continue;
+            int choice = dealerMode ? bot.decideAgainstDealer()
+                                    : bot.decide(playerCount - 1, game.getPot(), game.getGameFee());
+            decide(bot, choice, false);
+        }
+    }
+
+    private void decide(Seat player, int choice, boolean timedOut) {
+        /*
+        Takes in "player" of type Seat, "choice" of type int and
+        "timedOut" of type boolean.
+
+        Continuing (1) takes the game fee, or marks the player bankrupt if
+        they cannot pay it. Any other choice folds the player, as long as
+        at least 3 players are in the game.
+
+        Against the dealer, playing (1) puts up a play bet equal to the ante,
+        leaving (3) removes the player, and anything else folds the hand.
+
+        Ends the round once every player has decided.
+        */
+        player.decidedRound = round;
+        if (player.deadline != null) player.deadline.cancel();
+        pending--;
+
+        if (dealerMode) playAgainstDealer(player, choice);
+
+        // Update users balance and moves them onto the next round if they have enough money
+        else if (choice == 1) {
+            double fee = game.getGameFee();
+            boolean hasEnoughMoney = player.updateBalance(fee * -1);
+
+            GameLog.decision(player.getID(), choice, hasEnoughMoney ? fee : 0);
+
+            if (hasEnoughMoney) {
+                game.addToPot(fee);
+                broadcastMsg(player, "[HOST]: " + player.getUserName() + " is going to the next round!");
+            } else {
+                GameLog.bankrupt(player.getID());
+                bankrupt.add(player);
+            }
+        }
+        // A minimum of 3 players must be present in the game for you to fold
+        else {
+            GameLog.decision(player.getID(), choice, 0);
+            if (playerCount >= 3) {
+                player.countFold();
+                removeFromGame(player);
+            }
+        }
+
+        if (!player.left && !timedOut) player.deliver("[HOST]: Wait for other players");
+        if (pending == 0) endRound();
+    }
+
+    private void playAgainstDealer(Seat player, int choice) {
+        /*
+        Takes in "player" of type Seat and "choice" of type int.
+
+        Records the player's play bet in the ledger, or folds their hand.
+        A player who cannot cover the play bet folds.
+        */
+        int i = player.seatIndex;
+        if (choice == 1 && player.updateBalance(ante[i] * -1)) {
+            play[i] = ante[i];
+            game.addToPot(play[i]);
+            GameLog.decision(player.getID(), choice, play[i]);
+            broadcastMsg(player, "[HOST]: " + player.getUserName() + " plays against the dealer!");
+        }
+        else if (choice == 3) {
+            GameLog.decision(player.getID(), choice, 0);
+            removeFromGame(player);
+        }
+        else {
+            GameLog.decision(player.getID(), choice, 0);
+            player.countFold();
+            broadcastMsg(player, "[HOST]: " + player.getUserName() + " folds this hand.");
+        }
+    }
+
+    private void endRound() {
+        /*
+        Runs once every player has decided.
+
+        Bankrupt players leave, unless fewer than two players can still
+        pay, in which case everyone goes to the showdown. Two or fewer
+        players also go to the showdown. Otherwise the next round is dealt.
+
+        A dealer game settles every bet and deals again, for as long as
+        anyone is left at the table.
+        */
+        stats.roundPlayed(System.currentTimeMillis(), game.getPot());
+
+        if (dealerMode) {
+            settle();
+            if (playerCount == 0) finish();
+            else deal();
+            return;
+        }
+
+        boolean allBankrupt = false;
+        if (!bankrupt.isEmpty()) {
+            if (everyoneBankrupt()) allBankrupt = true;
+            else for (Seat player : bankrupt) if (!player.left) removeFromGame(player);
+            bankrupt.clear();
+        }
+
+        if (tournament != null && !finalTable) {
+            continueTournament(allBankrupt);
+            return;
+        }
+
+        seatArrivals();
+        if (playerCount == 0) finish();
+        else if (allBankrupt || playerCount <= 2) showdown();
+        else deal();
+    }
+
+    private void showdown() {
+        /*
+        Determines the winner of the game and pays them the pot:
+        the best hand of everyone when all players are bankrupt at the
+        same time, the last player left, or the better of the last two.
+        */
+        phase = Phase.SHOWDOWN;
+        printStats();
+
+        int winnerID = showdownWinner();
+        GameLog.showdown(winnerID, candidateIDs());
+        phase = Phase.SETTLE;
+
+        // Handles case where there is no tie
+        if (winnerID != -1) printWinnerStats(game.findPlayer(winnerID));
+
+        // Handles case where the last two players tie
+        else printTieStats(game.getHead(), game.getHead().link);
+
+        finish();
+    }
+
+    private void continueTournament(boolean allBankrupt) {
+        /*
+        Takes in "allBankrupt" of type boolean.
+
+        Ends a round at a tournament table (other than the final table).
+        If everyone went bankrupt at once, the best hand takes the pot
+        (two tied players split it) and the others are knocked out.
+        Players moved here during the round are seated, and players the
+        tournament asked for are sent on. The leaderboard is updated, then
+        the next round is dealt, or the table waits if it has too few
+        players left.
+        */
+        if (allBankrupt) {
+            int winnerID = showdownWinner();
+            GameLog.showdown(winnerID, candidateIDs());
+            if (winnerID != -1) printWinnerStats(game.findPlayer(winnerID));
+            else printTieStats(game.getHead(), game.getHead().link);
+            game.putPot(0);
+
+            // Collected first, since leaving removes a player from the list
+            List<Seat> out = new ArrayList<>();
+            for (Seat curr = game.getHead(); curr != null; curr = curr.link) {
+                if (winnerID != -1 && curr.getID() != winnerID) out.add(curr);
+            }
+            for (Seat player : out) removeFromGame(player);
+        }
+
+        seatArrivals();
+        if (breakingUp || !departures.isEmpty()) sendAway();
+        if (breakingUp) return;
+
+        reportStandings();
+        if (playerCount >= 3) deal();
+        else waitForPlayers();
+    }
+
+    private void waitForPlayers() {
+        // Stops dealing until the tournament sends more players or breaks the table up
+        phase = Phase.WAIT;
+        broadcastMsg("[HOST]: Waiting for players from other tables...");
+        updateSnapshot();
+    }
+
+    private void seatArrivals() {
+        // Seats the players moved here during the round, in time for the next one
+        for (Seat player : arriving) seatArrival(player);
+        arriving.clear();
+    }
+
+    private void seatArrival(Seat player) {
+        // Adds a player moved here from another table to the game
+        if (player instanceof PlayerHandler handler) handler.resetSent();
+        game.addPlayer(player);
+        playerCount++;
+        player.deliver("[HOST]: You are now seated at table " + number + ".");
+        broadcastMsg(player, "[HOST]: " + player.getUserName() + " has moved to this table!");
+        updateSnapshot();
+    }
+
+    private void sendAway() {
+        /*
+        Sends a player to each table the tournament asked for and tells it
+        how many went. Only the seat moves; the player's account stays
+        where it is. A table that is breaking up also hands its pot to the
+        tournament's prize pool and closes.
+        */
+        int planned = departures.size();
+        int sent = 0;
+        for (Table to : departures) {
+            Seat player = game.getHead();
+            if (player == null) break;  // Knocked out before they could be moved
+
+            playerCount--;
+            game.removePlayer(player.getID());
+            player.deliver("[HOST]: You are moving to table " + to.getNumber() + "...");
+            broadcastMsg(player, "[HOST]: " + player.getUserName() + " has moved to another table.");
+            player.moveTo(to);
+            GameLog.move(player.getID(), to.getNumber());
+            to.post(() -> to.onArrive(player));
+            sent++;
+        }
+        departures = List.of();
+
+        double pot = 0;
+        if (breakingUp) {
+            pot = game.getPot();
+            game.putPot(0);
+            GameLog.potOut(pot);
+            phase = Phase.SETTLE;
+            finished.countDown();
+        }
+
+        int moved = sent, count = playerCount;
+        double handedOver = pot;
+        tournament.post(() -> tournament.onSent(this, planned, moved, count, handedOver));
+        updateSnapshot();
+    }
+
+    private void reportStandings() {
+        // Sends the balance of every player at the table to the tournament's leaderboard
+        int[] ids = new int[playerCount];
+        String[] names = new String[playerCount];
+        double[] chips = new double[playerCount];
+        int i = 0;
+        for (Seat curr = game.getHead(); curr != null && i < ids.length; curr = curr.link, i++) {
+            ids[i] = curr.getID();
+            names[i] = curr.getUserName();
+            chips[i] = curr.getBalance();
+        }
+        tournament.post(() -> tournament.onStandings(ids, names, chips));
+    }
+
+    private boolean forwarded(PlayerHandler player, Consumer<Table> message) {
+        /*
+        Takes in "player" of type PlayerHandler and "message", what to run on their table.
+
+        Returns false if the player sits at this table. Otherwise posts
+        the message to the table the player was moved to and returns true.
+        */
+        Table at = player.table;
+        if (at == this) return false;
+        at.post(() -> message.accept(at));
+        return true;
+    }
+
+    private void settle() {
+        /*
+        Shows the dealer's hand and settles every seat against it in one
+        pass over the round's ledger. The dealer's hand is only ranked once.
+        Players who left during the round forfeit their bets.
+        */
+        phase = Phase.SHOWDOWN;
+        Card[] dealer = game.getDealerHand();
+        int dealerHandType = Poker.handType(dealer);
+        boolean qualifies = Poker.dealerQualifies(dealer, dealerHandType);
+        broadcastMsg("[HOST]: Dealer has " + dealer[0] + " " + dealer[1] + " " + dealer[2] +
+                (qualifies ? "" : ", which does not qualify"));
+
+        phase = Phase.SETTLE;
+        for (int i = 0; i < seated; i++) {
+            Seat seat = seats[i];
+            seats[i] = null;    // The ledger doesn't hold on to players after the round
+            if (seat.left) continue;
+
+            double back = Poker.settleAgainstDealer(seat.hand, dealer, dealerHandType, qualifies,
+                    ante[i], play[i], pairPlus[i]);
+            double net = back - ante[i] - play[i] - pairPlus[i];
+            seat.updateBalance(back);
+            GameLog.settle(seat.getID(), back);
+            if (net > 0) seat.countWin();
+
+            if (net > 0) seat.deliver("[HOST]: You won $" + net);
+            else if (net < 0) seat.deliver("[HOST]: You lost $" + (-net));
+            else seat.deliver("[HOST]: You pushed");
+        }
+        seated = 0;
+        game.putPot(0);
+        printStats();
+    }
+
+    private void finish() {
+        // Ends the game: closes every player's connection and releases anyone waiting on the table
+        phase = Phase.SETTLE;
+        if (tournament != null) {
+            reportStandings();
+            tournament.post(() -> tournament.onTableFinished(this));
+        }
+        for (Seat curr = game.getHead(); curr != null; curr = curr.link) {
+            curr.deliver("[HOST]: The game is over. Closing connection...");
+            if (curr.deadline != null) curr.deadline.cancel();
+            curr.left = true;
+            curr.unseat();
+            curr.closeConnection();
+        }
+        updateSnapshot();
+        finished.countDown();
+    }
+
+    private void removeFromGame(Seat player) {
+        /*
+        Takes in "player" of type Seat.
+
+        Decreases the player count.
+
+        Removes the player from the game, forgets their session and closes their account.
+        If the table was still waiting on their decision, it stops waiting.
+
+        Sends message to all other players that the user has
+        left the game.
+
+        Closes the connection between the player and host
+        */
+        player.left = true;
+        playerCount--;
+        game.removePlayer(player.getID());
+        if (player.deadline != null) player.deadline.cancel();
+        if (phase == Phase.DECIDE && player.decidedRound != round) {
+            player.decidedRound = round;
+            pending--;
+        }
+        GameLog.fold(player.getID());
+        if (tournament != null) {
+            int id = player.getID(), count = playerCount;
+            tournament.post(() -> tournament.onKnockout(this, id, player.getUserName(), count));
+        }
+
+        broadcastMsg(player, "[HOST]: " + player.getUserName() + " folded...");
+        player.deliver("[HOST]: Closing connection...");
+        player.closeConnection();
+        player.unseat();
+        updateSnapshot();
+    }
+
+
+
+    // Messaging methods
+    public void broadcastMsg(String msg) {
+        /*
+        Takes "msg" of type String.
+
+        Returns if msg is null.
+        Otherwise, sends "msg" to every player and to spectators.
+        Players who are disconnected get it when they re-attach.
+        */
+        broadcastMsg(null, msg);
+    }
+
+    public void broadcastMsg(Seat from, String msg) {
+        /*
+        Takes in "from" of type Seat and "msg" of type String.
+
+        Same as broadcastMsg(msg), but the message is not sent
+        back to "from", the player it is about.
+        */
+        if (msg == null) return;
+        feed.publish(msg);
+
+        for (Seat curr = game.getHead(); curr != null; curr = curr.link) {
+            if (curr != from) curr.deliver(msg);
+        }
+    }
+
+    public void gameIntro() {
+        broadcastMsg("The game has begun!");
+        broadcastMsg("Shuffling cards...");
+        broadcastMsg("Dealing cards...");
+    }
+
+    public void showHand() {
+        /*
+        Loops over the array of cards for each player
+        and displays each player their hand.
+
+        Each hand is built from the cached card faces in the reused
+        render buffer and queued as a single message. A hand is only
+        sent once per deal. Bots are not sent anything.
+
+        If the strategy table is available, a continue/fold hint
+        for the current pot and fee follows the hand (elimination games only).
+        */
+        int deal = game.getDealCount();
+        for (Seat seat = game.getHead(); seat != null; seat = seat.link) {
+            if (!(seat instanceof PlayerHandler curr) || !curr.isConnected() || curr.handSent == deal) continue;
+
+            render.setLength(0);
+            render.append(HAND_TOP).append(curr.hand[0].getFace()).append('\t')
+                  .append(curr.hand[1].getFace()).append('\t')
+                  .append(curr.hand[2].getFace()).append(HAND_BOTTOM);
+            if (!dealerMode && Strategy.hint(render, curr.hand, playerCount - 1, game.getPot(), game.getGameFee())) {
+                render.append(NL);
+            }
+            curr.send(render.toString());
+            curr.handSent = deal;
+        }
+    }
+
+    public void printMenu() {
+        /*
+        Displays the menu to each player.
+
+        The menu never changes, so it is only sent once per player.
+        */
+        for (Seat seat = game.getHead(); seat != null; seat = seat.link) {
+            if (!(seat instanceof PlayerHandler curr) || !curr.isConnected() || curr.menuSent) continue;
+
+            curr.send(dealerMode ? DEALER_MENU : MENU);
+            curr.menuSent = true;
+        }
+    }
+
+    public void printStats() {
+        /*
+        Displays the current stats of the game to each player.
+
+        Only the stats that changed since they were last sent to
+        that player are written. Players with no changes get nothing.
+
+        Once per round, each player is also sent their own record and
+        the table's rounds per minute and average pot. All of it is kept
+        as running counters, so nothing is recounted here.
+        */
+        long now = System.currentTimeMillis();
+        String tableLine = "Table: " + Math.round(stats.roundsPerMinute(now) * 10) / 10.0 +
+                " rounds/min, average pot $" + Math.round(stats.averagePot(now) * 100) / 100.0;
+
+        double pot = game.getPot();
+        if (pot != potPublished) {
+            feed.publish("[HOST]: Pot: " + pot);
+            potPublished = pot;
+            updateSnapshot();
+        }
+
+        for (Seat seat = game.getHead(); seat != null; seat = seat.link) {
+            if (!(seat instanceof PlayerHandler curr)) continue;
+            boolean potChanged = curr.potSent != pot;
+            boolean countChanged = curr.playerCountSent != playerCount;
+            boolean balanceChanged = curr.balanceSent != curr.getBalance();
+            boolean recordChanged = curr.roundsSent != curr.getRounds();
+            if (!curr.isConnected() || (!potChanged && !countChanged && !balanceChanged && !recordChanged)) continue;
+
+            render.setLength(0);
+            render.append(NL).append("Game stats: ");
+            if (potChanged) render.append("Pot: ").append(pot);
+            render.append(NL);
+            if (countChanged) render.append("# of players: ").append(playerCount).append(NL);
+            if (balanceChanged) render.append("Your balance: ").append(curr.getBalance()).append(NL);
+            if (recordChanged) {
+                writeRecord(render, curr);
+                render.append(tableLine).append(NL);
+            }
+            curr.send(render.toString());
+
+            curr.potSent = pot;
+            curr.playerCountSent = playerCount;
+            curr.balanceSent = curr.getBalance();
+            curr.roundsSent = curr.getRounds();
+        }
+    }
+
+    private static void writeRecord(StringBuilder to, Seat player) {
+        // Writes the player's record: rounds, win and fold rates, net profit and the hands they were dealt
+        double net = Math.round(player.getNet() * 100) / 100.0;
+        to.append("Your record: ").append(player.getRounds()).append(" rounds, ")
+          .append(Math.round(player.getWinRate() * 100)).append("% won, ")
+          .append(Math.round(player.getFoldRate() * 100)).append("% folded, net ")
+          .append(net < 0 ? "-$" + (-net) : "$" + net).append(NL);
+
+        to.append("Your hands: ");
+        for (int type = 0; type < HAND_NAMES.length; type++) {
+            if (type > 0) to.append(", ");
+            to.append(HAND_NAMES[type]).append(' ').append(player.getHandTypeCount(type));
+        }
+        to.append(NL);
+    }
+
+    public void printWinnerStats(Seat winner) {
+        String winnerName = winner.getUserName();
+        winner.updateBalance(game.getPot());
+        winner.countWin();
+        GameLog.payout(winner.getID(), game.getPot());
+
+        broadcastMsg("[HOST]: " + winnerName + " has won the game!");
+        broadcastMsg("[HOST]: " + winnerName + " made $" + game.getPot());
+    }
+
+    public void printTieStats(Seat w1, Seat w2) {
+        String winner1Name = w1.getUserName();
+        String winner2Name = w2.getUserName();
+
+        double split = Math.round((game.getPot() / 2.0) * 100) / 100.0;
+        w1.updateBalance(split);
+        w2.updateBalance(split);
+        w1.countWin();
+        w2.countWin();
+        GameLog.payout(w1.getID(), split);
+        GameLog.payout(w2.getID(), split);
+
+        broadcastMsg("[HOST]: " + winner1Name + " & " + winner2Name + " tied");
+        broadcastMsg("[HOST]: " + winner1Name + " made $" + split);
+        broadcastMsg("[HOST]: " + winner2Name + " made $" + split);
+    }
+
+    private void updateSnapshot() {
+        // Refreshes the public state that spectators are sent when they join or fall behind
+        snapshot = "Players:" + game.printPlayerHandler() + "| # of players: " + playerCount +
+                " | Pot: " + game.getPot();
+    }
+
+
+
+    // Game related methods
+    public int showdownWinner() {
+        /*
+        Determines the player with the best hand of everyone still in the
+        game, by the same rules the replay tool checks (Poker.showdownWinner()).
+
+        Returns their ID, or -1 if the last two players tie.
+        */
+        Card[][] hands = new Card[playerCount][];
+        int[] ids = new int[playerCount];
+        int i = 0;
+        for (Seat curr = game.getHead(); curr != null && i < ids.length; curr = curr.link, i++) {
+            hands[i] = curr.hand;
+            ids[i] = curr.getID();
+        }
+        return Poker.showdownWinner(hands, ids);
+    }
+
+    public int[] candidateIDs() {
+        // Returns the IDs of every player still in the game, in table order
+        int[] ids = new int[playerCount];
+        int i = 0;
+        for (Seat curr = game.getHead(); curr != null && i < ids.length; curr = curr.link) {
+            ids[i++] = curr.getID();
+        }
+        return ids;
+    }
+
+    public boolean everyoneBankrupt() {
+        /*
+        Checks if all players have a balance of 0.
+
+        If a minimum of two players are not bankrupt, returns false.
+
+        Otherwise, returns true.
+        */
+        int notBankruptCount = 0;
+        for (Seat curr = game.getHead(); curr != null; curr = curr.link) {
+            if (curr.getBalance() > 0) notBankruptCount++;
+
+            if (notBankruptCount == 2) return false;
+        }
+        return true;
+    }
+
+
+
+    // Accessors
+    public Phase getPhase() {
+        return this.phase;
+    }
+
+    public int getPlayerCount() {
+        // Returns the # of players in the game
+        return this.playerCount;
+    }
+
+    public int getNumber() {
+        return this.number;
+    }
+
+    public SpectatorFeed getFeed() {
+        return this.feed;
+    }
+}
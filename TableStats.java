@@ -0,0 +1,95 @@
+/*
+Purpose: Keeps running statistics of a table: how many rounds it plays per minute
+and how big its pots are.
+
+In general:
+The last minute is kept in a ring of one-second buckets. Each bucket counts
+the rounds that ended in that second and adds up their pots, and running
+totals of the whole ring are kept alongside. When time moves on, the buckets
+that fall out of the minute are subtracted from the totals and reused, so
+recording a round or asking for a rate never goes back over old rounds.
+
+Only the table's own thread uses a TableStats, so nothing here is locked.
+*/
+
+
+public class TableStats {
+    // Window fields
+    private static final int BUCKETS = 60;                  // One minute of one-second buckets
+    private static final long BUCKET_MILLIS = 1000;
+    private final int[] rounds = new int[BUCKETS];          // Rounds that ended in each second
+    private final double[] pots = new double[BUCKETS];      // Sum of their pots
+    private long second = -1;                               // Latest second the ring has moved up to
+    private long firstSecond = -1;                          // Second the first round ended in
+    private int windowRounds = 0;                           // Rounds in the last minute
+    private double windowPot = 0;                           // Sum of their pots
+
+    // Lifetime fields
+    private long totalRounds = 0;
+    private double totalPot = 0;
+
+
+
+    // Instance methods
+    public void roundPlayed(long nowMillis, double pot) {
+        /*
+        Takes in "nowMillis" of type long and "pot" of type double.
+
+        Counts a round that just ended with the given pot.
+        */
+        advance(nowMillis);
+        if (firstSecond < 0) firstSecond = second;
+
+        int bucket = (int) (second % BUCKETS);
+        rounds[bucket]++;
+        pots[bucket] += pot;
+        windowRounds++;
+        windowPot += pot;
+        totalRounds++;
+        totalPot += pot;
+    }
+
+    public double roundsPerMinute(long nowMillis) {
+        // Returns the rounds played over the last minute, scaled up if the table is younger than that
+        advance(nowMillis);
+        if (windowRounds == 0) return 0;
+
+        long seconds = Math.min(second - firstSecond + 1, BUCKETS);
+        return windowRounds * 60.0 / seconds;
+    }
+
+    public double averagePot(long nowMillis) {
+        // Returns the average pot over the last minute, or over all rounds if none ended in it
+        advance(nowMillis);
+        if (windowRounds > 0) return windowPot / windowRounds;
+        return totalRounds == 0 ? 0 : totalPot / totalRounds;
+    }
+
+    public long getTotalRounds() {
+        return this.totalRounds;
+    }
+
+    private void advance(long nowMillis) {
+        /*
+        Takes in "nowMillis" of type long.
+
+        Moves the ring up to the current second, emptying every bucket
+        that has fallen out of the last minute.
+        */
+        long now = nowMillis / BUCKET_MILLIS;
+        if (second < 0) {
+            second = now;
+            return;
+        }
+
+        long steps = Math.min(now - second, BUCKETS);
+        for (long i = 1; i <= steps; i++) {
+            int bucket = (int) ((second + i) % BUCKETS);
+            windowRounds -= rounds[bucket];
+            windowPot -= pots[bucket];
+            rounds[bucket] = 0;
+            pots[bucket] = 0;
+        }
+        if (now > second) second = now;
+    }
+}
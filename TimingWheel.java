@@ -0,0 +1,152 @@
+/*
+Purpose: Runs timeouts (such as decision deadlines) for every player on the server
+from one shared thread.
+
+In general:
+Time is cut into ticks and the wheel has one bucket per tick. A timeout is placed
+in the bucket its deadline falls in, along with how many full turns of the wheel
+are left before it is due. Scheduling and cancelling are O(1) from any thread:
+new timeouts are handed to the wheel thread through a queue, and cancelled ones
+are only flagged and skipped when their bucket comes around.
+*/
+
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+public class TimingWheel {
+    // Wheel fields
+    private final long tickNanos;               // Length of one tick
+    private final int mask;                     // Bucket count - 1 (bucket count is a power of two)
+    private final Timeout[] buckets;            // Head of each bucket's list of timeouts
+    private final ConcurrentLinkedQueue<Timeout> added = new ConcurrentLinkedQueue<>();  // Not yet in a bucket
+    private final long startNanos = System.nanoTime();
+    private long tick = 0;                      // Ticks processed so far (wheel thread only)
+    private final AtomicBoolean started = new AtomicBoolean();  // Whether the wheel thread is running
+
+
+
+    // A single scheduled task
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadlineTick;
+        private final AtomicBoolean done = new AtomicBoolean();    // Set once expired or cancelled
+        private long rounds;                    // Full turns of the wheel left before it is due
+        private Timeout next;                   // Next timeout in the same bucket
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public boolean cancel() {
+            // Returns true if the timeout was cancelled before it ran
+            return done.compareAndSet(false, true);
+        }
+
+        public boolean isDone() {
+            return done.get();
+        }
+    }
+
+
+
+    // Constructors
+    public TimingWheel(long tickMillis, int bucketCount) {
+        /*
+        Takes in "tickMillis" of type long and "bucketCount" of type int.
+
+        Timeouts fire within one tick of their deadline. The bucket count is
+        rounded up to a power of two. The wheel thread is only started
+        when the first timeout is scheduled.
+        */
+        int size = Integer.highestOneBit(Math.max(bucketCount, 2) - 1) << 1;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(tickMillis, 1));
+        this.mask = size - 1;
+        this.buckets = new Timeout[size];
+    }
+
+
+
+    // Instance methods
+    public Timeout schedule(Runnable task, long delayMillis) {
+        /*
+        Takes in "task" of type Runnable and "delayMillis" of type long.
+
+        Returns a handle that can cancel the task. The task runs on the
+        wheel thread, so it should be short and never block.
+        */
+        long elapsed = System.nanoTime() - startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(delayMillis, 0));
+        Timeout timeout = new Timeout(task, (elapsed + tickNanos - 1) / tickNanos);
+        added.add(timeout);
+
+        if (!started.get() && started.compareAndSet(false, true)) {
+            Thread worker = new Thread(this::run, "timing-wheel");
+            worker.setDaemon(true);
+            worker.start();
+        }
+        return timeout;
+    }
+
+    private void run() {
+        // Advances one tick at a time, expiring every due timeout in the current bucket
+        while (true) {
+            long sleep = startNanos + (tick + 1) * tickNanos - System.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(sleep);
+                continue;
+            }
+
+            tick++;
+            placeAdded();
+            expire(buckets[(int) tick & mask]);
+        }
+    }
+
+    private void placeAdded() {
+        // Moves newly scheduled timeouts into their buckets
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.isDone()) continue;
+
+            long due = Math.max(timeout.deadlineTick, tick);
+            timeout.rounds = (due - tick) / buckets.length;
+            int index = (int) due & mask;
+            timeout.next = buckets[index];
+            buckets[index] = timeout;
+        }
+    }
+
+    private void expire(Timeout head) {
+        /*
+        Takes in "head" of type Timeout, the first timeout of the current bucket.
+
+        Runs the timeouts that are due, drops cancelled ones and leaves the
+        rest for a later turn of the wheel.
+        */
+        int index = (int) tick & mask;
+        Timeout kept = null;
+        for (Timeout curr = head; curr != null; ) {
+            Timeout next = curr.next;
+
+            if (curr.isDone()) {
+                // Cancelled; drop it
+            }
+            else if (curr.rounds <= 0) {
+                if (curr.done.compareAndSet(false, true)) {
+                    try {curr.task.run();}
+                    catch (RuntimeException e) {e.printStackTrace();}
+                }
+            }
+            else {
+                curr.rounds--;
+                curr.next = kept;
+                kept = curr;
+            }
+            curr = next;
+        }
+        buckets[index] = kept;
+    }
+}
@@ -0,0 +1,316 @@
+/*
+Purpose: Runs a tournament: spreads the entrants over as many tables as it takes,
+keeps the tables balanced as players are knocked out, and keeps a live leaderboard.
+
+In general:
+Every table plays the usual elimination rounds on its own. The tournament is
+a coordinator that the tables report to with messages (starts, knockouts,
+standings), handled one at a time on the coordinator's own thread. Whenever
+a report leaves the tables uneven, it sends a table a message asking it to
+pass players on to other tables, or to break up entirely. A table does so at
+the end of its current round, so no table ever stops for another. Only one
+move is out at a time, and nothing else is moved until every table involved
+has confirmed it.
+
+Moving a player only moves their seat: their account stays where it is in the
+AccountStore. The pot of a table that breaks up goes into a prize pool, which
+the final table plays for on top of its own pot.
+
+The leaderboard is a sorted map that is updated one player at a time as the
+tables report, so reading it (spectators, the host) never needs a lock or a recount.
+*/
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class Tournament {
+    // Tournament options
+    public static final int TABLE_SIZE = Math.max(3, Math.min(Integer.getInteger("poker.tableSize", 6), Shoe.maxPlayers(false)));
+    public static final int MAX_ENTRANTS = Integer.getInteger("poker.entrants", 10_000);
+
+    // Coordinator fields
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tournament");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final CountDownLatch finished = new CountDownLatch(1);  // Released when the final table is over
+
+    // Registration fields (entrants are seated before the tournament starts, from any thread)
+    private final List<Table> registered = new ArrayList<>();
+    private final Map<Table, Integer> entrants = new HashMap<>();  // Entrants given to each table
+    private int lastTableSeats = TABLE_SIZE;    // Entrants given to the newest table
+
+    // Table fields (coordinator thread only)
+    private final List<Table> tables = new ArrayList<>();           // Tables still in play
+    private final Map<Table, Integer> counts = new HashMap<>();     // Players at each table, as last reported
+    private int awaiting = 0;           // Confirmations still due for the move in progress
+    private Table finalTable;           // Last table left, once the tournament is down to one
+    private double prizePool = 0;       // Pots of the tables that broke up
+    private final List<String> knockedOut = new ArrayList<>();     // Names in the order they were knocked out
+
+    // Leaderboard fields (updated on the coordinator thread, read from any thread)
+    private final ConcurrentSkipListMap<Standing, String> leaderboard = new ConcurrentSkipListMap<>(
+            Comparator.comparingDouble((Standing standing) -> standing.chips).reversed()
+                      .thenComparingInt(standing -> standing.id));
+    private final Map<Integer, Standing> standings = new HashMap<>();  // Each player's entry in the leaderboard
+    private volatile int remaining = 0;     // Players still in the tournament
+    private volatile int tablesLeft = 0;    // Tables still in play
+
+    // One player's place in the leaderboard
+    private static final class Standing {
+        final double chips;
+        final int id;
+
+        Standing(double chips, int id) {
+            this.chips = chips;
+            this.id = id;
+        }
+    }
+
+
+
+    // Registration methods
+    public synchronized Table register() {
+        /*
+        Returns the table a new entrant is seated at. Tables are filled up
+        one after another; they are evened out once the tournament starts.
+        */
+        if (lastTableSeats == TABLE_SIZE) {
+            registered.add(new Table(this));
+            lastTableSeats = 0;
+        }
+        lastTableSeats++;
+        Table table = registered.get(registered.size() - 1);
+        entrants.merge(table, 1, Integer::sum);
+        return table;
+    }
+
+    public void start() {
+        /*
+        Starts every table; each reports how many players it was given.
+
+        Every entrant counts as still in from the start, so places are
+        right even for knockouts at tables that start before others report.
+        */
+        post(() -> {
+            synchronized (this) {
+                tables.addAll(registered);
+                for (int count : entrants.values()) remaining += count;
+            }
+            tablesLeft = tables.size();
+            GameLog.tournament(tables.size());
+            System.out.println("The tournament has begun on " + tables.size() + " tables!");
+            for (Table table : tables) table.post(table::onStart);
+        });
+    }
+
+    public synchronized Table table(int number) {
+        // Returns the tournament's table with that number, or null if there is none
+        for (Table table : registered) if (table.getNumber() == number) return table;
+        return null;
+    }
+
+    public void awaitFinished() throws InterruptedException {
+        // Blocks the caller (never a table worker) until the final table is over
+        finished.await();
+    }
+
+    void post(Runnable message) {
+        // Queues a message for the coordinator thread. Safe to call from any thread
+        coordinator.execute(() -> {
+            try {message.run();}
+            catch (RuntimeException e) {e.printStackTrace();}
+        });
+    }
+
+
+
+    // Message handlers (only ever run on the coordinator thread)
+    void onStarted(Table table, int count) {
+        // A table has left the lobby with "count" players; entrants it never seated are not in the tournament
+        counts.put(table, count);
+        synchronized (this) {remaining -= entrants.get(table) - count;}
+        rebalance();
+    }
+
+    void onKnockout(Table table, int id, String name, int count) {
+        /*
+        Takes in the table, the ID and name of the player knocked out,
+        and the # of players left at that table.
+
+        The player finishes in the place just below everyone still in.
+        */
+        knockedOut.add(name);
+        System.out.println(name + " was knocked out in place " + remaining + "..");
+        remaining--;
+
+        Standing standing = standings.remove(id);
+        if (standing != null) leaderboard.remove(standing);
+
+        if (counts.containsKey(table)) counts.put(table, count);
+        rebalance();
+    }
+
+    void onStandings(int[] ids, String[] names, double[] chips) {
+        // Moves each reported player to their new place in the leaderboard
+        for (int i = 0; i < ids.length; i++) {
+            Standing now = new Standing(chips[i], ids[i]);
+            Standing before = standings.put(ids[i], now);
+            if (before != null) leaderboard.remove(before);
+            leaderboard.put(now, names[i]);
+        }
+    }
+
+    void onSent(Table table, int planned, int sent, int count, double pot) {
+        /*
+        Takes in the table that sent players on, how many it was asked to
+        send and did send, how many it has left, and the pot it handed
+        over (if it broke up).
+
+        Players it could not send (they were knocked out first) will not
+        arrive, so their confirmations are no longer awaited.
+        */
+        awaiting -= 1 + planned - sent;
+        prizePool += pot;
+        if (counts.containsKey(table)) counts.put(table, count);
+        rebalance();
+    }
+
+    void onArrived(Table table, int count) {
+        // A player has arrived at the table, which now has "count" players
+        awaiting--;
+        if (counts.containsKey(table)) counts.put(table, count);
+        rebalance();
+    }
+
+    void onTableFinished(Table table) {
+        // The final table has played down to a winner
+        if (table != finalTable) return;
+
+        tablesLeft = 0;
+        remaining = 0;
+        finished.countDown();
+    }
+
+
+
+    // Balancing methods
+    private void rebalance() {
+        /*
+        Makes the next move needed to keep the tournament on as few tables
+        as possible, with no two tables more than one player apart:
+
+        - a table breaks up when the players left fit on one table fewer,
+          or would leave a table with fewer than 3 players
+        - otherwise the biggest table sends players to the smallest
+        - once one table is left, it becomes the final table
+
+        Nothing is moved while a start or a move is still unconfirmed.
+        */
+        if (awaiting > 0 || finalTable != null || counts.size() < tables.size()) return;
+
+        if (tables.isEmpty()) {
+            finished.countDown();
+            return;
+        }
+
+        int players = 0;
+        for (Table table : tables) players += counts.get(table);
+        // Every table needs 3 players to deal, which can mean a few more than TABLE_SIZE at each
+        int needed = Math.max(1, Math.min((players + TABLE_SIZE - 1) / TABLE_SIZE, players / 3));
+
+        if (tables.size() > needed) {
+            breakUp(Collections.min(tables, bySize()));
+            return;
+        }
+
+        Table biggest = Collections.max(tables, bySize());
+        Table smallest = Collections.min(tables, bySize());
+        int gap = counts.get(biggest) - counts.get(smallest);
+        if (gap > 1) {
+            send(biggest, Collections.nCopies(gap / 2, smallest), false);
+            return;
+        }
+
+        if (tables.size() == 1) {
+            finalTable = tables.get(0);
+            double pool = prizePool;
+            prizePool = 0;
+            System.out.println("Table " + finalTable.getNumber() + " is the final table!");
+            finalTable.post(() -> finalTable.onFinalTable(pool));
+        }
+    }
+
+    private void breakUp(Table table) {
+        // Sends every player at the table to the other tables, smallest first, and stops counting it
+        tables.remove(table);
+        tablesLeft = tables.size();
+
+        List<Table> destinations = new ArrayList<>();
+        for (int i = counts.remove(table); i > 0; i--) {
+            Table to = Collections.min(tables, bySize());
+            counts.merge(to, 1, Integer::sum);
+            destinations.add(to);
+        }
+        System.out.println("Breaking up table " + table.getNumber() + "..");
+        send(table, destinations, true);
+    }
+
+    private void send(Table from, List<Table> destinations, boolean breakUp) {
+        // Asks "from" to send one player to each destination, and waits for every confirmation
+        awaiting += destinations.size() + 1;
+        if (!breakUp) {
+            counts.merge(from, -destinations.size(), Integer::sum);
+            for (Table to : destinations) counts.merge(to, 1, Integer::sum);
+        }
+        from.post(() -> from.onSendAway(destinations, breakUp));
+    }
+
+    private Comparator<Table> bySize() {
+        return Comparator.comparingInt((Table table) -> counts.get(table)).thenComparingInt(Table::getNumber);
+    }
+
+
+
+    // Leaderboard methods
+    public String snapshot() {
+        // Returns how many are left and the top of the leaderboard; safe to call from any thread
+        StringBuilder snapshot = new StringBuilder("Tournament: " + remaining + " players on " +
+                tablesLeft + " tables | Leaders:");
+        int place = 1;
+        for (Map.Entry<Standing, String> entry : leaderboard.entrySet()) {
+            if (place > 5) break;
+            snapshot.append(' ').append(place++).append(". ").append(entry.getValue())
+                    .append(" $").append(entry.getKey().chips);
+        }
+        return snapshot.toString();
+    }
+
+    public String results() {
+        /*
+        Returns the final standing of every entrant, one per line: the
+        players still seated at the end by their balance, then everyone
+        else in the reverse order they were knocked out.
+
+        Only call once the tournament is over.
+        */
+        List<String> order = new ArrayList<>(leaderboard.values());
+        for (int i = knockedOut.size() - 1; i >= 0; i--) order.add(knockedOut.get(i));
+
+        StringBuilder results = new StringBuilder("Final standings:");
+        for (int i = 0; i < order.size(); i++) {
+            results.append(System.lineSeparator()).append(i + 1).append(". ").append(order.get(i));
+        }
+        return results.toString();
+    }
+}